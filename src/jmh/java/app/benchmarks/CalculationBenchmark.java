@@ -0,0 +1,49 @@
+package app.benchmarks;
+
+import app.entities.Calculation;
+import app.entities.User;
+import app.entities.enums.Operation;
+import app.exceptions.ValidationException;
+import app.security.enums.Role;
+import app.services.CalculationService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+CalculationService's arithmetic path without the database: evaluate builds the Calculation that create/saveAll
+would persist (operation dispatch, divide-by-zero check, entity + timestamp allocation).
+Run with: mvn -Pbench test-compile exec:exec -Djmh.args="CalculationBenchmark"
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalculationBenchmark {
+
+    @Param({"ADD", "DIVIDE"})
+    public Operation operation;
+
+    private CalculationService service;
+    private User user;
+    private double num1 = 1234.5;
+    private double num2 = 6.75;
+
+    @Setup
+    public void setup() {
+        // evaluate never touches the EntityManagerFactory
+        service = new CalculationService(null);
+        user = new User();
+        user.setId(1);
+        user.setUsername("benchUser");
+        user.setRole(Role.GUEST);
+    }
+
+    @Benchmark
+    public Calculation evaluate() throws ValidationException {
+        return service.evaluate(user, operation, num1, num2);
+    }
+}
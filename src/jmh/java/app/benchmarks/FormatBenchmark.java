@@ -0,0 +1,58 @@
+package app.benchmarks;
+
+import app.dtos.CalculationDTO;
+import app.routes.handling.BodyFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Encode and decode cost of a calculation listing per BodyFormat (JSON, compact JSON, CBOR, Smile).
+Payload sizes do not need a benchmark: setup prints them once per trial, e.g. "CBOR 100 rows: 6123 bytes".
+The numbers are full-precision doubles (i / 7.0), which is what real results look like and where text formats pay most.
+Run with: mvn -Pbench test-compile exec:exec -Djmh.args="FormatBenchmark"
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    @Param({"JSON", "COMPACT_JSON", "CBOR", "SMILE"})
+    public BodyFormat format;
+
+    @Param({"100"})
+    public int size;
+
+    private List<CalculationDTO> dtos;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        dtos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double num1 = i / 7.0;
+            double num2 = Math.PI * i;
+            dtos.add(new CalculationDTO(i + 1, num1, num2, num1 * num2, "MULTIPLY",
+                    LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(i), "benchUser"));
+        }
+        encoded = format.listBytes(dtos);
+        System.out.printf("%n%s %d rows: %d bytes%n", format, size, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return format.listBytes(dtos);
+    }
+
+    @Benchmark
+    public CalculationDTO[] decode() throws Exception {
+        return format.mapper().readValue(encoded, CalculationDTO[].class);
+    }
+}
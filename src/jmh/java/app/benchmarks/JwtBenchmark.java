@@ -0,0 +1,61 @@
+package app.benchmarks;
+
+import app.entities.User;
+import app.security.enums.Role;
+import app.security.utils.JwtPrincipal;
+import app.security.utils.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+What the auth before-handler costs per request for a client that keeps sending the same token.
+oldPath is the three separate parses (validateToken, getUsername, getRole) the filter used to do,
+verify is the single cached call it does now. generateToken and validateToken are the uncached
+sign (login) and verify (old filter) costs on their own.
+Run with: mvn -Pbench test-compile exec:exec -Djmh.args="JwtBenchmark"
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private User user;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        user = new User();
+        user.setId(1);
+        user.setUsername("benchUser");
+        user.setRole(Role.GUEST);
+        token = JwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public void oldPath(Blackhole bh) {
+        bh.consume(JwtUtil.validateToken(token));
+        bh.consume(JwtUtil.getUsername(token));
+        bh.consume(JwtUtil.getRole(token));
+    }
+
+    @Benchmark
+    public JwtPrincipal verify() {
+        return JwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public String generateToken() throws Exception {
+        return JwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return JwtUtil.validateToken(token);
+    }
+}
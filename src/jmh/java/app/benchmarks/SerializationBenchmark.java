@@ -0,0 +1,109 @@
+package app.benchmarks;
+
+import app.config.AppJsonMapper;
+import app.dtos.CalculationDTO;
+import app.dtos.DTOMapper;
+import app.entities.Calculation;
+import app.entities.User;
+import app.security.enums.Role;
+import app.utils.Utils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import io.javalin.json.JavalinJackson;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/*
+Entity -> DTO -> JSON, the path every calculation listing takes. serializeDtos goes through AppJsonMapper,
+the mapper ctx.json uses; serializeDtosJavalinDefault is Javalin's stock JavalinJackson for comparison.
+errorMessage is Utils.convertToJsonMessage, which every error response builds; errorMessageNewMapper is how it
+used to work (a new ObjectMapper per call). Its Context is a Mockito mock, so a few ns of that are mock overhead.
+Run with: mvn -Pbench test-compile exec:exec -Djmh.args="SerializationBenchmark"
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1", "100"})
+    public int size;
+
+    private final AppJsonMapper json = new AppJsonMapper();
+    private final JavalinJackson javalinDefault = new JavalinJackson();
+    private List<Calculation> calculations;
+    private List<CalculationDTO> dtos;
+    private Context ctx;
+
+    @Setup
+    public void setup() {
+        User user = new User();
+        user.setId(1);
+        user.setUsername("benchUser");
+        user.setRole(Role.GUEST);
+
+        calculations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Calculation c = new Calculation();
+            c.setId(i + 1);
+            c.setUser(user);
+            c.setNum1(i * 1.5);
+            c.setNum2(3.25);
+            c.setResult(i * 1.5 + 3.25);
+            c.setOperation("ADD");
+            c.setTimestamp(LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(i));
+            calculations.add(c);
+        }
+        dtos = toDtos();
+
+        ctx = mock(Context.class, withSettings().stubOnly());
+        when(ctx.status()).thenReturn(HttpStatus.BAD_REQUEST);
+    }
+
+    @Benchmark
+    public List<CalculationDTO> toDtos() {
+        List<CalculationDTO> out = new ArrayList<>(calculations.size());
+        for (Calculation c : calculations) out.add(DTOMapper.toCalculationDTO(c));
+        return out;
+    }
+
+    @Benchmark
+    public String serializeDtos() {
+        return json.toJsonString(dtos, List.class);
+    }
+
+    @Benchmark
+    public String serializeDtosJavalinDefault() {
+        return javalinDefault.toJsonString(dtos, List.class);
+    }
+
+    @Benchmark
+    public String mapAndSerialize() {
+        return json.toJsonString(toDtos(), List.class);
+    }
+
+    @Benchmark
+    public String errorMessage() {
+        return Utils.convertToJsonMessage(ctx, "error", "Cannot divide by zero");
+    }
+
+    @Benchmark
+    public String errorMessageNewMapper() throws Exception {
+        Map<String, String> msgMap = new HashMap<>();
+        msgMap.put("error", "Cannot divide by zero");
+        msgMap.put("status", String.valueOf(ctx.status()));
+        return new ObjectMapper().writeValueAsString(msgMap);
+    }
+}
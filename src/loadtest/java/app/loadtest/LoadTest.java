@@ -0,0 +1,293 @@
+package app.loadtest;
+
+import app.config.ApplicationConfig;
+import app.config.HibernateConfig;
+import io.javalin.Javalin;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+End-to-end load test: starts the real server (ApplicationConfig.startServer) in this JVM, registers and logs in
+a set of users, then sends a weighted mix of calc/history/stats requests at a fixed arrival rate.
+
+Open model: request i is due at start + i / rate and is sent then, whether or not earlier requests have answered.
+Latency is measured from that due time, not from when the request actually left, so a stalled server shows up as
+latency instead of as fewer requests (no coordinated omission).
+
+Throughput is the number of successful responses that arrived inside the measurement window, divided by the
+window's length. Requests still in flight when it closes are waited for and their latency is recorded, but they do
+not count as throughput, so an overloaded server cannot look as fast as the offered rate.
+
+The run is repeated per server thread count (threads=8,32,200,virtual), each on a fresh server against the same
+database, and per offered rate (rates=100,200,400,800, lowest first). The highest rate a thread count sustains
+(at least 95% of it answered in the window, no errors, p99 under slo) is its capacity. If capacity stops growing as
+threads are added, something is serialising requests.
+
+Run with: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="rates=100,200,400,800 duration=30 threads=8,32,200,virtual"
+Options (key=value): rate or rates (req/s), duration and warmup (s), slo (p99 in ms, default 500), users, threads,
+mix (e.g. calc=6,history=3,stats=1), db (tc = Testcontainers Postgres, needs Docker; local = the database in
+config.properties).
+ */
+
+public class LoadTest {
+
+    private record Route(String name, String method, String path, String body) {}
+
+    private static final Map<String, Route> ROUTES = Map.of(
+            "calc", new Route("calc", "POST", "/calc/add", "{\"num1\": 12.5, \"num2\": 7.25}"),
+            "history", new Route("history", "GET", "/calc/calculations", null),
+            "stats", new Route("stats", "GET", "/public/stats", null));
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final List<Integer> rates;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final double sloMillis;
+    private final int users;
+    private final List<String> threadCounts;
+    private final LinkedHashMap<Route, Integer> mix;
+
+    private final HttpClient client;
+    private final ExecutorService clientPool = Executors.newCachedThreadPool();
+    private final List<String> tokens = new ArrayList<>();
+
+    private LoadTest(Map<String, String> opts) {
+        rates = Arrays.stream(opts.getOrDefault("rates", opts.getOrDefault("rate", "200")).split(","))
+                .map(r -> Integer.parseInt(r.trim()))
+                .sorted()
+                .toList();
+        durationSeconds = Integer.parseInt(opts.getOrDefault("duration", "30"));
+        warmupSeconds = Integer.parseInt(opts.getOrDefault("warmup", "10"));
+        sloMillis = Double.parseDouble(opts.getOrDefault("slo", "500"));
+        users = Integer.parseInt(opts.getOrDefault("users", "20"));
+        threadCounts = List.of(opts.getOrDefault("threads", "8,32,200").split(","));
+        mix = parseMix(opts.getOrDefault("mix", "calc=6,history=3,stats=1"));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientPool)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+        }
+        if (!"local".equals(opts.getOrDefault("db", "tc"))) HibernateConfig.setTest(true);
+
+        LoadTest test = new LoadTest(opts);
+        try {
+            test.run();
+        } finally {
+            test.clientPool.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.printf(Locale.ROOT, "Open model: %s req/s for %ds each (after %ds warm-up), %d users, mix %s, p99 SLO %.0f ms%n",
+                rates, durationSeconds, warmupSeconds, users, describeMix(), sloMillis);
+
+        List<String> summary = new ArrayList<>();
+        List<String> capacities = new ArrayList<>();
+        for (String threads : threadCounts) {
+            boolean virtual = threads.trim().equalsIgnoreCase("virtual");
+            int maxThreads = virtual ? 0 : Integer.parseInt(threads.trim());
+            String label = virtual ? "virtual" : String.valueOf(maxThreads);
+
+            Javalin server = ApplicationConfig.startServer(0, maxThreads, virtual);
+            try {
+                String base = "http://localhost:" + server.port() + "/api";
+                if (tokens.isEmpty()) registerUsers(base);
+
+                drive(base, rates.get(0), warmupSeconds, null);
+                Integer capacity = null;
+                for (int rate : rates) {
+                    System.out.printf("%n== server threads: %s, offered %d req/s ==%n", label, rate);
+                    Map<Route, Result> results = new LinkedHashMap<>();
+                    for (Route r : mix.keySet()) results.put(r, new Result());
+                    Result overall = drive(base, rate, durationSeconds, results);
+
+                    printTable(results, overall);
+                    double achieved = overall.throughput(durationSeconds);
+                    boolean sustained = achieved >= rate * 0.95 && overall.errors.sum() == 0 && overall.ms(99) <= sloMillis;
+                    summary.add(String.format(Locale.ROOT, "%-8s %8d %10.1f %10.2f %10.2f %10.2f %8d %8d %s",
+                            label, rate, achieved, overall.ms(50), overall.ms(99), overall.ms(99.9),
+                            overall.late.sum(), overall.errors.sum(), sustained ? "" : "overloaded"));
+                    // past the first rate it cannot keep up with, higher rates only pile up a longer queue
+                    if (!sustained) break;
+                    capacity = rate;
+                }
+                capacities.add(String.format("%-8s %s", label, capacity != null ? capacity + " req/s" : "below " + rates.get(0) + " req/s"));
+            } finally {
+                ApplicationConfig.stopServer(server);
+            }
+        }
+
+        System.out.printf("%n== by server thread count and offered rate ==%n");
+        System.out.printf("%-8s %8s %10s %10s %10s %10s %8s %8s%n", "threads", "offered", "req/s", "p50 ms", "p99 ms", "p999 ms", "late", "errors");
+        summary.forEach(System.out::println);
+        System.out.printf("%n== capacity (highest offered rate sustained) ==%n");
+        capacities.forEach(System.out::println);
+    }
+
+    private void registerUsers(String base) throws Exception {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < users; i++) {
+            String credentials = "{\"username\": \"load_" + runId + "_" + i + "\", \"password\": \"load-pass\"";
+            send(base, "POST", "/auth/register", credentials + ", \"role\": \"GUEST\"}", null);
+            String body = send(base, "POST", "/auth/login", credentials + "}", null);
+            Matcher m = TOKEN.matcher(body);
+            if (!m.find()) throw new IllegalStateException("Login failed: " + body);
+            tokens.add(m.group(1));
+        }
+    }
+
+    private String send(String base, String method, String path, String body, String token) throws Exception {
+        HttpResponse<String> res = client.send(request(base, method, path, body, token), HttpResponse.BodyHandlers.ofString());
+        if (res.statusCode() >= 400) throw new IllegalStateException(method + " " + path + " -> " + res.statusCode() + ": " + res.body());
+        return res.body();
+    }
+
+    private static HttpRequest request(String base, String method, String path, String body, String token) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        if (body != null) b.header("Content-Type", "application/json").method(method, HttpRequest.BodyPublishers.ofString(body));
+        else b.method(method, HttpRequest.BodyPublishers.noBody());
+        return b.build();
+    }
+
+    // Sends requests on schedule for the given time; results == null means warm-up (nothing recorded)
+    private Result drive(String base, int rate, int seconds, Map<Route, Result> results) throws InterruptedException {
+        Result overall = new Result();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        AtomicInteger inFlight = new AtomicInteger();
+        long maxSendLagNanos = 0;
+
+        long start = System.nanoTime();
+        long windowEnd = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+            maxSendLagNanos = Math.max(maxSendLagNanos, System.nanoTime() - due);
+
+            Route route = pick();
+            String token = tokens.get((int) (i % tokens.size()));
+            inFlight.incrementAndGet();
+            client.sendAsync(request(base, route.method(), route.path(), route.body(), token), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((res, err) -> {
+                        long now = System.nanoTime();
+                        long micros = TimeUnit.NANOSECONDS.toMicros(now - due);
+                        boolean failed = err != null || res.statusCode() >= 400;
+                        boolean inWindow = now <= windowEnd;
+                        if (results != null) {
+                            results.get(route).record(micros, failed, inWindow);
+                            overall.record(micros, failed, inWindow);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+
+        // Let stragglers finish so their full latency is recorded instead of dropped (they are counted as late)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        if (results != null && maxSendLagNanos > TimeUnit.MILLISECONDS.toNanos(10))
+            System.out.printf(Locale.ROOT, "warning: the load generator fell up to %.1f ms behind schedule; latencies include that%n",
+                    maxSendLagNanos / 1e6);
+        return overall;
+    }
+
+    private Route pick() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int n = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Route, Integer> e : mix.entrySet()) {
+            n -= e.getValue();
+            if (n < 0) return e.getKey();
+        }
+        throw new IllegalStateException("empty mix");
+    }
+
+    private void printTable(Map<Route, Result> results, Result overall) {
+        System.out.printf("%-10s %-24s %8s %10s %10s %10s %10s %10s %8s %8s%n",
+                "route", "endpoint", "count", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "late", "errors");
+        results.forEach((route, r) -> printRow(route.name(), route.method() + " " + route.path(), r));
+        printRow("all", "", overall);
+    }
+
+    private void printRow(String name, String endpoint, Result r) {
+        System.out.printf(Locale.ROOT, "%-10s %-24s %8d %10.1f %10.2f %10.2f %10.2f %10.2f %8d %8d%n",
+                name, endpoint, r.histogram().getTotalCount(), r.throughput(durationSeconds),
+                r.ms(50), r.ms(99), r.ms(99.9), r.histogram().getMaxValue() / 1e3, r.late.sum(), r.errors.sum());
+    }
+
+    private static LinkedHashMap<Route, Integer> parseMix(String spec) {
+        LinkedHashMap<Route, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            Route route = ROUTES.get(kv[0].trim());
+            if (route == null) throw new IllegalArgumentException("Unknown route in mix: " + kv[0] + " (known: " + ROUTES.keySet() + ")");
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight > 0) mix.put(route, weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("mix selects no routes");
+        return mix;
+    }
+
+    private String describeMix() {
+        StringJoiner j = new StringJoiner(", ");
+        mix.forEach((route, weight) -> j.add(route.name() + "=" + weight));
+        return j.toString();
+    }
+
+    // Latencies in microseconds; the recorder takes concurrent writes from the HTTP client's threads
+    private static final class Result {
+        private final Recorder recorder = new Recorder(1, MAX_LATENCY_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder succeededInWindow = new LongAdder();
+        private final LongAdder late = new LongAdder();
+        private Histogram histogram;
+
+        void record(long micros, boolean failed, boolean inWindow) {
+            recorder.recordValue(Math.max(1, Math.min(micros, MAX_LATENCY_MICROS)));
+            if (failed) errors.increment();
+            else if (inWindow) succeededInWindow.increment();
+            if (!inWindow) late.increment();
+        }
+
+        Histogram histogram() {
+            if (histogram == null) histogram = recorder.getIntervalHistogram();
+            return histogram;
+        }
+
+        double ms(double percentile) {
+            return histogram().getValueAtPercentile(percentile) / 1e3;
+        }
+
+        // Successful responses that arrived inside the window, per second of window
+        double throughput(int seconds) {
+            return (double) succeededInWindow.sum() / seconds;
+        }
+    }
+}
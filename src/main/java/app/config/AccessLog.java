@@ -0,0 +1,96 @@
+package app.config;
+
+import app.utils.Utils;
+import io.javalin.http.Context;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+One JSON line per finished request on the "access" logger. logback.xml routes that logger through an
+AsyncAppender that drops lines when its queue is full, so a slow disk never holds up a request thread.
+Errors are always logged; 2xx/3xx responses only for an ACCESS_LOG_SAMPLE fraction of them.
+ */
+
+public final class AccessLog {
+
+    private static final Logger access = LoggerFactory.getLogger("access");
+    private static final LongAdder requests = new LongAdder();
+
+    private static final boolean ENABLED = Utils.getConfigBoolean("ACCESS_LOG", true);
+    private static final double SAMPLE = Double.parseDouble(Utils.getConfigValue("ACCESS_LOG_SAMPLE", "1.0"));
+
+    // ctx attribute holding the matched route template, set by ApplicationConfig.recordMetrics
+    static final String ROUTE = "route";
+
+    private AccessLog() {
+    }
+
+    // Javalin's http request logger: runs once the response has been written
+    public static void log(Context ctx, Float ms) {
+        requests.increment();
+        if (!ENABLED || !access.isInfoEnabled()) return;
+        int status = ctx.statusCode();
+        if (status < 400 && SAMPLE < 1.0 && ThreadLocalRandom.current().nextDouble() >= SAMPLE) return;
+
+        String route = ctx.attribute(ROUTE);
+        access.info(format(Instant.now().toString(), ctx.method().name(), route != null ? route : "unmatched",
+                ctx.path(), status, ms, ctx.attribute("jwt.user"), bytesWritten(ctx)));
+    }
+
+    public static long requests() {
+        return requests.sum();
+    }
+
+    static String format(String ts, String method, String route, String path, int status, float ms, String user, long bytes) {
+        StringBuilder sb = new StringBuilder(192);
+        sb.append("{\"ts\":\"").append(ts)
+                .append("\",\"method\":\"").append(method)
+                .append("\",\"route\":");
+        string(sb, route);
+        sb.append(",\"path\":");
+        string(sb, path);
+        sb.append(",\"status\":").append(status)
+                .append(",\"ms\":").append(Math.round(ms * 1000) / 1000.0)
+                .append(",\"user\":");
+        string(sb, user);
+        sb.append(",\"bytes\":").append(bytes).append('}');
+        return sb.toString();
+    }
+
+    private static void string(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    // Body bytes actually sent (after compression); -1 when the container does not tell us
+    private static long bytesWritten(Context ctx) {
+        try {
+            return Request.getBaseRequest(ctx.req()).getResponse().getHttpOutput().getWritten();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package app.config;
+
+import app.utils.Json;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.javalin.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Javalin's JsonMapper on top of the shared Json.MAPPER, using its pre-built writers for calculation responses
+public class AppJsonMapper implements JsonMapper {
+
+    // Strings are taken as ready-made JSON, like JavalinJackson does (Utils.convertToJsonMessage relies on that)
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String s) return s;
+        try {
+            return Json.writerFor(obj).writeValueAsString(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        if (obj instanceof String s) return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+        try {
+            return new ByteArrayInputStream(Json.writerFor(obj).writeValueAsBytes(obj));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeToOutputStream(Stream<?> stream, OutputStream outputStream) {
+        try (SequenceWriter seq = Json.MAPPER.writer().writeValuesAsArray(outputStream)) {
+            Iterator<?> it = stream.iterator();
+            while (it.hasNext()) seq.write(it.next());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        try {
+            return Json.MAPPER.readValue(json, Json.MAPPER.constructType(targetType));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return Json.MAPPER.readValue(json, Json.MAPPER.constructType(targetType));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
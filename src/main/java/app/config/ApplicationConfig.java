@@ -1,42 +1,97 @@
 package app.config;
 
+import app.daos.CalculationWriteBehind;
+import app.daos.ReadRouting;
+import app.daos.UnitOfWork;
 import app.exceptions.ApiException;
 import app.exceptions.NotAuthorizedException;
 import app.exceptions.ValidationException;
+import app.metrics.MetricsRegistry;
+import app.metrics.RequestTimer;
+import app.metrics.TimedJsonMapper;
 import app.routes.Routes;
 import app.routes.handling.RouteDocs;
+import app.security.utils.JwtPrincipal;
 import app.security.utils.JwtUtil;
 import app.utils.Utils;
 import io.javalin.Javalin;
 import io.javalin.config.JavalinConfig;
 import io.javalin.http.Context;
 import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 public class ApplicationConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(ApplicationConfig.class);
-    private static int counter = 1;
+    private static final String UNIT_OF_WORK = "uow";
+    private static final String REQUEST_TIMER = "timer";
+
+    // SERVER_TIMING=true adds a Server-Timing header (auth, db, compute, serialize) to every response
+    private static final boolean SERVER_TIMING = Utils.getConfigBoolean("SERVER_TIMING", false);
+    // Requests slower than SLOW_REQUEST_MS get their phase breakdown logged, for a SLOW_REQUEST_SAMPLE fraction of them
+    private static final long SLOW_REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(Utils.getConfigLong("SLOW_REQUEST_MS", 500));
+    private static final double SLOW_REQUEST_SAMPLE = Double.parseDouble(Utils.getConfigValue("SLOW_REQUEST_SAMPLE", "0.1"));
 
     public static void configuration(JavalinConfig config) {
         config.showJavalinBanner = false;
         config.router.contextPath = "/api";
+        // Jetty falls back to platform threads (with a warning) when the JVM has no virtual threads
+        config.useVirtualThreads = isVirtualThreadsEnabled();
+        // ctx.json time shows up as the "serialize" phase in Server-Timing and the slow request log
+        config.jsonMapper(new TimedJsonMapper(new AppJsonMapper()));
+    }
+
+    // VIRTUAL_THREADS=true (env or config.properties) serves requests on virtual threads
+    public static boolean isVirtualThreadsEnabled() {
+        return Utils.getConfigBoolean("VIRTUAL_THREADS", false);
     }
 
     public static Javalin startServer(int port) {
-        EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+        return startServer(port, Utils.getConfigInt("SERVER_MAX_THREADS", 0), isVirtualThreadsEnabled());
+    }
+
+    // maxThreads caps Jetty's request pool (0 keeps Jetty's default of 200); it does not apply to virtual threads.
+    // The load test calls this directly to compare thread counts in one JVM.
+    public static Javalin startServer(int port, int maxThreads, boolean virtualThreads) {
+        EntityManagerFactory primary = HibernateConfig.getEntityManagerFactory();
+        // Without a bounded request pool, cap DB concurrency at the pool size so requests queue here and not in checkout
+        EntityManagerFactory emf = virtualThreads
+                ? DbConcurrencyLimiter.wrap(primary, HibernateConfig.getPoolSize(), Utils.getConfigLong("DB_ACQUIRE_TIMEOUT_MS", 5_000))
+                : primary;
+        if (HibernateConfig.isWriteBehindEnabled()) startWriteBehind(emf);
+        startReadReplica(emf, virtualThreads);
 
         Javalin server = Javalin.create(cfg -> {
             configuration(cfg);
+            cfg.useVirtualThreads = virtualThreads;
+            if (!virtualThreads && maxThreads > 0)
+                cfg.jetty.threadPool = new QueuedThreadPool(maxThreads, Math.min(8, maxThreads), 60_000);
+            cfg.requestLogger.http(AccessLog::log);
             cfg.router.apiBuilder(new Routes().api(emf));
         });
 
         server.get("/routes", RouteDocs.overviewHtml);
         server.get("/", ctx -> ctx.redirect(ctx.contextPath() + "/routes"));
 
+        // Per-request state: timing for /api/metrics, and one EntityManager + transaction opened lazily by the first DAO call
+        server.before(ctx -> {
+            MetricsRegistry.requestStarted();
+            ctx.attribute(REQUEST_TIMER, RequestTimer.start());
+            ctx.attribute(UNIT_OF_WORK, UnitOfWork.begin());
+        });
+
         //Global JWT GUARD
         server.before(ctx -> {
+            // Read-your-writes: a request thread starts unpinned unless the client asks for primary reads
+            ReadRouting.clear();
+            if ("strong".equalsIgnoreCase(ctx.header("X-Consistency"))) ReadRouting.pinToPrimary();
+
             if ("OPTIONS".equals(ctx.method())) return;
 
             String base = ctx.contextPath();
@@ -51,17 +106,25 @@ public class ApplicationConfig {
                 throw NotAuthorizedException.unauthorized("Missing or invalid Authorization header");
 
             String token = header.substring("Bearer ".length()).trim();
-            if (!JwtUtil.validateToken(token)) throw NotAuthorizedException.unauthorized("Invalid or expired token");
-
-            ctx.attribute("jwt.user", JwtUtil.getUsername(token));
-            ctx.attribute("jwt.role", JwtUtil.getRole(token));
+            long verifyStart = System.nanoTime();
+            JwtPrincipal principal = JwtUtil.verify(token);
+            long verifyNanos = System.nanoTime() - verifyStart;
+            MetricsRegistry.jwtVerified(verifyNanos);
+            RequestTimer.addAuth(verifyNanos);
+            if (principal == null) throw NotAuthorizedException.unauthorized("Invalid or expired token");
+
+            ctx.attribute("jwt.user", principal.username());
+            ctx.attribute("jwt.role", principal.role());
+            ctx.attribute("jwt.uid", principal.userId());
         });
 
-        server.exception(ValidationException.class, (e, ctx) -> ctx.status(400).json(Utils.convertToJsonMessage(ctx, "error", e.getMessage())));
-        server.exception(NotAuthorizedException.class, (e, ctx) -> ctx.status(e.getStatus() == 0 ? 401 : e.getStatus()).json(Utils.convertToJsonMessage(ctx, "error", e.getMessage())));
+        server.exception(ValidationException.class, (e, ctx) -> rollbackOnly(ctx).status(400).json(Utils.convertToJsonMessage(ctx, "error", e.getMessage())));
+        server.exception(NotAuthorizedException.class, (e, ctx) -> rollbackOnly(ctx).status(e.getStatus() == 0 ? 401 : e.getStatus()).json(Utils.convertToJsonMessage(ctx, "error", e.getMessage())));
         server.exception(ApiException.class, ApplicationConfig::apiExceptionHandler);
         server.exception(Exception.class, ApplicationConfig::generalExceptionHandler);
 
+        server.after(ApplicationConfig::endUnitOfWork);
+        server.after(ApplicationConfig::recordMetrics);
         server.after(ApplicationConfig::afterRequest);
 
         server.start(port);
@@ -72,21 +135,95 @@ public class ApplicationConfig {
     public static void stopServer(Javalin server) {
         if (server != null) {
             server.stop();
+            CalculationWriteBehind.stopAll();
             logger.info("Server stopped.");
         }
     }
 
+    private static void startWriteBehind(EntityManagerFactory emf) {
+        CalculationWriteBehind.start(emf,
+                Utils.getConfigInt("WRITE_BEHIND_CAPACITY", 10_000),
+                Utils.getConfigInt("WRITE_BEHIND_BATCH_SIZE", 500),
+                Utils.getConfigLong("WRITE_BEHIND_MAX_DELAY_MS", 20),
+                Utils.getConfigLong("WRITE_BEHIND_OFFER_TIMEOUT_MS", 100));
+    }
+
+    private static void startReadReplica(EntityManagerFactory primary, boolean virtualThreads) {
+        EntityManagerFactory replica = HibernateConfig.getReadReplicaEntityManagerFactory();
+        if (replica == null) return;
+        if (virtualThreads)
+            replica = DbConcurrencyLimiter.wrap(replica, HibernateConfig.getPoolSize(), Utils.getConfigLong("DB_ACQUIRE_TIMEOUT_MS", 5_000));
+        ReadRouting.register(primary, replica);
+        logger.info("Read-only queries go to the read replica");
+    }
+
     private static void afterRequest(Context ctx) {
-        String info = ctx.method() + " " + ctx.path();
-        logger.info("Request {} - {} -> {}", counter++, info, ctx.status());
+        ReadRouting.clear();
+    }
+
+    // Runs after the commit so its time counts as DB time
+    private static void recordMetrics(Context ctx) {
+        RequestTimer timer = ctx.attribute(REQUEST_TIMER);
+        if (timer == null) return;
+        timer.finish();
+        long total = timer.elapsedNanos();
+        String method = ctx.method().name();
+        String route = RouteDocs.routeLabel(method, endpointPath(ctx));
+        ctx.attribute(AccessLog.ROUTE, route);
+        MetricsRegistry.requestFinished(method, route, ctx.statusCode(), total, timer.dbNanos());
+
+        // Streamed responses are already committed, so the header cannot be added there
+        if (SERVER_TIMING && !ctx.res().isCommitted()) ctx.header("Server-Timing", timer.serverTiming(total));
+        if (total >= SLOW_REQUEST_NANOS && ThreadLocalRandom.current().nextDouble() < SLOW_REQUEST_SAMPLE) {
+            logger.warn("Slow request {} {} -> {} in {} ms: auth {} ms, db {} ms, compute {} ms, serialize {} ms",
+                    method, route, ctx.statusCode(), ms(total), ms(timer.authNanos()), ms(timer.dbNanos()),
+                    ms(timer.computeNanos(total)), ms(timer.serializeNanos()));
+        }
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    // The matched route template without the context path, or null when no endpoint matched
+    private static String endpointPath(Context ctx) {
+        try {
+            String path = ctx.endpointHandlerPath();
+            String base = ctx.contextPath();
+            return path.startsWith(base + "/") ? path.substring(base.length()) : path;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Context rollbackOnly(Context ctx) {
+        UnitOfWork uow = ctx.attribute(UNIT_OF_WORK);
+        if (uow != null) uow.setRollbackOnly();
+        return ctx;
+    }
+
+    // Commits what the request did; if that fails the client must not see a success status
+    private static void endUnitOfWork(Context ctx) {
+        UnitOfWork uow = ctx.attribute(UNIT_OF_WORK);
+        if (uow == null) return;
+        // also covers Javalin's own HttpResponseExceptions (403 from RoleGuard etc.), which skip our handlers
+        if (ctx.statusCode() >= 400) uow.setRollbackOnly();
+        try {
+            uow.end();
+        } catch (RuntimeException e) {
+            logger.error("Commit failed for {} {}", ctx.method(), ctx.path(), e);
+            ctx.status(500).json(Utils.convertToJsonMessage(ctx, "error", "Could not save changes"));
+        }
     }
 
     private static void generalExceptionHandler(Exception e, Context ctx) {
+        rollbackOnly(ctx);
         logger.error("Unhandled exception", e);
         ctx.status(500).json(Utils.convertToJsonMessage(ctx, "error", e.getMessage()));
     }
 
     public static void apiExceptionHandler(ApiException e, Context ctx) {
+        rollbackOnly(ctx);
         ctx.status(e.getStatusCode());
         logger.warn("API exception {}: {}", e.getStatusCode(), e.getMessage());
         ctx.json(Utils.convertToJsonMessage(ctx, "warning", e.getMessage()));
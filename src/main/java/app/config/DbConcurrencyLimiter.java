@@ -0,0 +1,161 @@
+package app.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Caps how many EntityManagers are open at once, at the size of the connection pool.
+With virtual threads there is no request thread pool limiting concurrency any more, so thousands of requests
+could otherwise queue inside the pool's checkout. Here they wait on a fair semaphore instead, which is cheap for
+virtual threads, and every EntityManager that gets a permit is guaranteed a connection.
+A thread that already holds a permit (nested EntityManager) does not take a second one, so it cannot deadlock itself.
+The permit belongs to the EntityManagers sharing it, not to the thread: whichever thread closes the last of them
+gives it back, so an EntityManager handed to another thread (async handlers) cannot leak it.
+ */
+
+public class DbConcurrencyLimiter implements InvocationHandler {
+
+    private final EntityManagerFactory delegate;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    // Open EntityManagers per opening thread; the first one took the permit, nested ones share it
+    private final ThreadLocal<AtomicInteger> held = ThreadLocal.withInitial(AtomicInteger::new);
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private DbConcurrencyLimiter(EntityManagerFactory delegate, int maxConcurrent, long acquireTimeoutMs) {
+        this.delegate = delegate;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public static EntityManagerFactory wrap(EntityManagerFactory emf, int maxConcurrent, long acquireTimeoutMs) {
+        return (EntityManagerFactory) Proxy.newProxyInstance(EntityManagerFactory.class.getClassLoader(),
+                new Class<?>[]{EntityManagerFactory.class},
+                new DbConcurrencyLimiter(emf, maxConcurrent, acquireTimeoutMs));
+    }
+
+    // The limiter behind a wrapped factory, or null if the factory is not wrapped
+    public static DbConcurrencyLimiter of(EntityManagerFactory emf) {
+        if (emf != null && Proxy.isProxyClass(emf.getClass()) && Proxy.getInvocationHandler(emf) instanceof DbConcurrencyLimiter l) return l;
+        return null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals": return proxy == args[0];
+            case "hashCode": return System.identityHashCode(proxy);
+            case "toString": return "DbConcurrencyLimiter(" + delegate + ")";
+            case "createEntityManager": return limited(() -> (EntityManager) call(method, args));
+            default: return call(method, args);
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private EntityManager limited(ThrowingSupplier<EntityManager> open) throws Throwable {
+        AtomicInteger depth = held.get();
+        // join the permit only while it is still held: a close on another thread may be dropping it to 0 right now
+        for (int d = depth.get(); d > 0; d = depth.get()) {
+            if (depth.compareAndSet(d, d + 1)) return openShared(open, depth);
+        }
+
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for a database connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        if (!ok) {
+            timeouts.increment();
+            throw new PersistenceException("Timed out after " + acquireTimeoutMs + " ms waiting for a database connection");
+        }
+        acquired.increment();
+        depth.incrementAndGet();
+        return openShared(open, depth);
+    }
+
+    private EntityManager openShared(ThrowingSupplier<EntityManager> open, AtomicInteger depth) throws Throwable {
+        try {
+            return release(open.get(), depth);
+        } catch (Throwable t) {
+            leave(depth);
+            throw t;
+        }
+    }
+
+    private void leave(AtomicInteger depth) {
+        if (depth.decrementAndGet() == 0) permits.release();
+    }
+
+    // Wraps the EntityManager so close() gives up its share of the permit, once, on whatever thread closes it
+    private EntityManager release(EntityManager em, AtomicInteger depth) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "close":
+                            try {
+                                return method.invoke(em, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            } finally {
+                                if (released.compareAndSet(false, true)) leave(depth);
+                            }
+                        default:
+                            try {
+                                return method.invoke(em, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    public Map<String, Object> metrics() {
+        long count = acquired.sum();
+        var m = new LinkedHashMap<String, Object>();
+        m.put("maxConcurrent", maxConcurrent);
+        m.put("inUse", maxConcurrent - permits.availablePermits());
+        m.put("waiting", permits.getQueueLength());
+        m.put("acquired", count);
+        m.put("timeouts", timeouts.sum());
+        m.put("avgWaitMs", count == 0 ? 0.0 : waitNanos.sum() / 1e6 / count);
+        return m;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier<T> {
+        T get() throws Throwable;
+    }
+}
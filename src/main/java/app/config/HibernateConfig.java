@@ -1,6 +1,9 @@
 package app.config;
 
+import app.daos.OperationCounters;
 import app.entities.Calculation;
+import app.entities.DataVersion;
+import app.entities.OperationCounter;
 import app.entities.User;
 import app.exceptions.ApiException;
 import app.utils.Utils;
@@ -10,12 +13,21 @@ import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Properties;
 
 public class HibernateConfig {
 
+    // Shared with CalculationDAO.createAll so flushes line up with the JDBC batches
+    public static final int JDBC_BATCH_SIZE = 50;
+
     private static EntityManagerFactory emf;
     private static EntityManagerFactory emfTest;
+    private static EntityManagerFactory emfReplica;
     private static Boolean isTest = false;
 
     public static void setTest(Boolean test) {
@@ -31,6 +43,16 @@ public class HibernateConfig {
         return emf;
     }
 
+    // Write-behind for calculation inserts, off unless WRITE_BEHIND=true (env or config.properties)
+    public static boolean isWriteBehindEnabled() {
+        return Utils.getConfigBoolean("WRITE_BEHIND", false);
+    }
+
+    // Max open JDBC connections for the active profile; also the size of the DB limiter in virtual thread mode
+    public static int getPoolSize() {
+        return PoolConfig.forProfile(getTest()).maximumPoolSize();
+    }
+
     public static EntityManagerFactory getEntityManagerFactoryForTest() {
         if (emfTest == null) {
             setTest(true);
@@ -43,32 +65,98 @@ public class HibernateConfig {
         return createEMF(true);
     }
 
+    // Test profile (create-drop) against another database, e.g. a second Testcontainers URL standing in for a replica
+    public static EntityManagerFactory createNewEntityManagerFactoryForTest(String jdbcUrl) {
+        Properties props = setTestProperties(setBaseProperties(new Properties()));
+        props.put("hibernate.connection.url", jdbcUrl);
+        PoolConfig.test().fromEnvironment().apply(props);
+        return buildEMF(props, true);
+    }
+
+    // Read replica for the read-only DAO methods; null unless READ_REPLICA_URL is set (env or config.properties).
+    // Credentials default to the primary's. The schema is left alone here, the primary owns it.
+    public static EntityManagerFactory getReadReplicaEntityManagerFactory() {
+        if (emfReplica == null) {
+            String url = Utils.getConfigValue("READ_REPLICA_URL", "");
+            if (url.isBlank()) return null;
+            emfReplica = createReplicaEMF(url,
+                    Utils.getConfigValue("READ_REPLICA_USERNAME", Utils.getConfigValue("DB_USERNAME", "postgres")),
+                    Utils.getConfigValue("READ_REPLICA_PASSWORD", Utils.getConfigValue("DB_PASSWORD", "postgres")));
+        }
+        return emfReplica;
+    }
+
+    public static EntityManagerFactory createReplicaEMF(String jdbcUrl, String username, String password) {
+        Properties props = setBaseProperties(new Properties());
+        if (jdbcUrl.startsWith("jdbc:tc:"))
+            props.put("hibernate.connection.driver_class", "org.testcontainers.jdbc.ContainerDatabaseDriver");
+        props.put("hibernate.connection.url", jdbcUrl);
+        props.put("hibernate.connection.username", username);
+        props.put("hibernate.connection.password", password);
+        props.put("hibernate.hbm2ddl.auto", "none");
+        // Writes happen on the primary and could never evict entries cached here, so the replica does not cache
+        props.put("hibernate.cache.use_second_level_cache", "false");
+        props.put("hibernate.cache.use_query_cache", "false");
+
+        PoolConfig pool = PoolConfig.forProfile(getTest());
+        pool.apply(props);
+        props.put("hibernate.hikari.poolName", pool.poolName() + "-replica");
+        props.put("hibernate.hikari.readOnly", "true");
+        return buildEMF(props, false);
+    }
+
+
+    // Every factory gets its own CacheManager (Ehcache keys them by class loader), so closing one factory,
+    // e.g. in a test, never closes the caches of another one and two databases never share cached rows
+    private static CacheManager newCacheManager() throws URISyntaxException {
+        CachingProvider provider = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider");
+        URI config = HibernateConfig.class.getResource("/ehcache.xml").toURI();
+        return provider.getCacheManager(config, new ClassLoader(HibernateConfig.class.getClassLoader()) {});
+    }
 
     // TODO: IMPORTANT: Add Entity classes here for them to be registered with Hibernate
     private static void getAnnotationConfiguration(Configuration configuration) {
         configuration.addAnnotatedClass(Calculation.class);
         configuration.addAnnotatedClass(User.class);
+        configuration.addAnnotatedClass(OperationCounter.class);
+        configuration.addAnnotatedClass(DataVersion.class);
     }
 
     private static EntityManagerFactory createEMF(boolean forTest) {
-        try {
-            Configuration configuration = new Configuration();
-            Properties props = new Properties();
-            // Set the properties
-            setBaseProperties(props);
-            if (forTest) {
-                props = setTestProperties(props);
-            } else if (System.getenv("DEPLOYED") != null) {
-                setDeployedProperties(props);
-            } else {
+        Properties props = new Properties();
+        // Set the properties
+        setBaseProperties(props);
+        if (forTest) {
+            props = setTestProperties(props);
+        } else if (System.getenv("DEPLOYED") != null) {
+            setDeployedProperties(props);
+        } else {
+            try {
                 props = setDevProperties(props);
+            } catch (ApiException ex) {
+                System.err.println("Initial SessionFactory creation failed." + ex);
+                throw new ExceptionInInitializerError(ex);
             }
+        }
+        PoolConfig.forProfile(forTest).apply(props);
+        return buildEMF(props, true);
+    }
+
+    // primary = owns the schema and the stats counters; false for a read replica
+    private static EntityManagerFactory buildEMF(Properties props, boolean primary) {
+        try {
+            if (Boolean.parseBoolean(props.getProperty("hibernate.cache.use_second_level_cache")))
+                props.put("hibernate.javax.cache.cache_manager", newCacheManager());
+
+            Configuration configuration = new Configuration();
             configuration.setProperties(props);
             getAnnotationConfiguration(configuration);
 
             ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
             SessionFactory sf = configuration.buildSessionFactory(serviceRegistry);
             EntityManagerFactory emf = sf.unwrap(EntityManagerFactory.class);
+            PoolMetrics.install(emf);
+            if (primary) OperationCounters.seedIfEmpty(emf);
             return emf;
         } catch (Throwable ex) {
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -85,6 +173,17 @@ public class HibernateConfig {
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.use_sql_comments", "false");
+        props.put("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE));
+        props.put("hibernate.order_inserts", "true");
+
+        // Second-level cache (only @Cacheable entities, i.e. User) and query cache, on Ehcache via JCache
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        // Statistics feed the cache numbers in /admin/metrics; the per-session log lines they would add stay off
+        props.put("hibernate.generate_statistics", "true");
+        props.put("hibernate.session.events.log", "false");
         return props;
     }
 
@@ -115,6 +214,7 @@ public class HibernateConfig {
         props.put("hibernate.connection.password", "postgres");
         props.put("hibernate.archive.autodetection", "class");
         props.put("hibernate.show_sql", "true");
+        props.put("hibernate.generate_statistics", "true"); // statement-count assertions in tests
         props.put("hibernate.hbm2ddl.auto", "create-drop"); // update for production
         return props;
     }
@@ -0,0 +1,73 @@
+package app.config;
+
+import app.utils.Utils;
+
+import java.util.Properties;
+
+/*
+HikariCP settings per profile. Every value can be overridden by an environment variable (or config.properties)
+with the name given in fromEnvironment, so the pool can be tuned in deployment without a rebuild.
+ */
+
+public record PoolConfig(
+        String poolName,
+        int maximumPoolSize,
+        int minimumIdle,
+        long connectionTimeoutMs,
+        long idleTimeoutMs,
+        long maxLifetimeMs,
+        long leakDetectionThresholdMs,
+        int prepareThreshold,
+        boolean reWriteBatchedInserts
+) {
+
+    // Small pool that warns about connections held for more than 10s while developing
+    public static PoolConfig dev() {
+        return new PoolConfig("calc-dev", 10, 2, 5_000, 600_000, 1_800_000, 10_000, 5, true);
+    }
+
+    // Fixed-size pool (minimumIdle = max) so there is no connection churn under load; maxLifetime stays
+    // below the usual 30 min idle cut-off of managed databases and proxies
+    public static PoolConfig deployed() {
+        return new PoolConfig("calc", 20, 20, 3_000, 600_000, 1_500_000, 0, 5, true);
+    }
+
+    // Testcontainers database: few connections, generous timeout for container start-up
+    public static PoolConfig test() {
+        return new PoolConfig("calc-test", 5, 1, 10_000, 600_000, 1_800_000, 5_000, 5, true);
+    }
+
+    public static PoolConfig forProfile(boolean forTest) {
+        if (forTest) return test().fromEnvironment();
+        if (System.getenv("DEPLOYED") != null) return deployed().fromEnvironment();
+        return dev().fromEnvironment();
+    }
+
+    public PoolConfig fromEnvironment() {
+        return new PoolConfig(
+                poolName,
+                Utils.getConfigInt("DB_POOL_SIZE", maximumPoolSize),
+                Utils.getConfigInt("DB_POOL_MIN_IDLE", minimumIdle),
+                Utils.getConfigLong("DB_CONNECTION_TIMEOUT_MS", connectionTimeoutMs),
+                Utils.getConfigLong("DB_IDLE_TIMEOUT_MS", idleTimeoutMs),
+                Utils.getConfigLong("DB_MAX_LIFETIME_MS", maxLifetimeMs),
+                Utils.getConfigLong("DB_LEAK_DETECTION_MS", leakDetectionThresholdMs),
+                Utils.getConfigInt("DB_PREPARE_THRESHOLD", prepareThreshold),
+                Utils.getConfigBoolean("DB_REWRITE_BATCHED_INSERTS", reWriteBatchedInserts));
+    }
+
+    // hibernate.hikari.* is handed to HikariConfig by hibernate-hikaricp; dataSource.* ends up as pgjdbc connection properties
+    public Properties apply(Properties props) {
+        props.put("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        props.put("hibernate.hikari.poolName", poolName);
+        props.put("hibernate.hikari.maximumPoolSize", String.valueOf(maximumPoolSize));
+        props.put("hibernate.hikari.minimumIdle", String.valueOf(Math.min(minimumIdle, maximumPoolSize)));
+        props.put("hibernate.hikari.connectionTimeout", String.valueOf(connectionTimeoutMs));
+        props.put("hibernate.hikari.idleTimeout", String.valueOf(idleTimeoutMs));
+        props.put("hibernate.hikari.maxLifetime", String.valueOf(maxLifetimeMs));
+        props.put("hibernate.hikari.leakDetectionThreshold", String.valueOf(leakDetectionThresholdMs));
+        props.put("hibernate.hikari.dataSource.prepareThreshold", String.valueOf(prepareThreshold));
+        props.put("hibernate.hikari.dataSource.reWriteBatchedInserts", String.valueOf(reWriteBatchedInserts));
+        return props;
+    }
+}
@@ -0,0 +1,115 @@
+package app.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Live numbers for the Hikari pool behind an EntityManagerFactory: connection counts from the pool's MXBean,
+plus checkout wait and usage times from a metrics tracker installed on the running pool.
+ */
+
+public class PoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+
+    private static final Map<HikariDataSource, PoolMetrics> INSTALLED = new ConcurrentHashMap<>();
+
+    private final HikariDataSource dataSource;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    private PoolMetrics(HikariDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Hooks the tracker into the pool; a no-op when the factory is not backed by Hikari
+    public static void install(EntityManagerFactory emf) {
+        HikariDataSource ds = dataSource(emf);
+        if (ds == null) return;
+        INSTALLED.computeIfAbsent(ds, key -> {
+            PoolMetrics metrics = new PoolMetrics(key);
+            key.setMetricsTrackerFactory(metrics);
+            return metrics;
+        });
+    }
+
+    // null when the factory has no Hikari pool or install was never called for it
+    public static PoolMetrics of(EntityManagerFactory emf) {
+        HikariDataSource ds = dataSource(emf);
+        return ds == null ? null : INSTALLED.get(ds);
+    }
+
+    private static HikariDataSource dataSource(EntityManagerFactory emf) {
+        try {
+            ConnectionProvider provider = emf.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry().getService(ConnectionProvider.class);
+            if (provider == null || !provider.isUnwrappableAs(HikariDataSource.class)) return null;
+            return provider.unwrap(HikariDataSource.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return this;
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        created.increment();
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquired.increment();
+        acquireNanos.add(elapsedAcquiredNanos);
+        maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageMillis.add(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    public Map<String, Object> snapshot() {
+        long count = acquired.sum();
+        var m = new LinkedHashMap<String, Object>();
+        m.put("poolName", dataSource.getPoolName());
+        m.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            m.put("active", pool.getActiveConnections());
+            m.put("idle", pool.getIdleConnections());
+            m.put("total", pool.getTotalConnections());
+            m.put("pending", pool.getThreadsAwaitingConnection());
+        }
+        m.put("checkouts", count);
+        m.put("avgCheckoutWaitMs", count == 0 ? 0.0 : acquireNanos.sum() / 1e6 / count);
+        m.put("maxCheckoutWaitMs", maxAcquireNanos.get() / 1e6);
+        m.put("avgUsageMs", count == 0 ? 0.0 : (double) usageMillis.sum() / count);
+        m.put("timeouts", timeouts.sum());
+        m.put("connectionsCreated", created.sum());
+        return m;
+    }
+}
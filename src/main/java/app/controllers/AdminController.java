@@ -1,16 +1,42 @@
 package app.controllers;
 
+import app.config.AccessLog;
+import app.config.DbConcurrencyLimiter;
+import app.config.PoolMetrics;
+import app.daos.CalculationWriteBehind;
+import app.daos.ReadRouting;
+import app.dtos.ExportFilter;
+import app.entities.User;
+import app.exceptions.ApiException;
+import app.security.utils.JwtUtil;
+import app.security.utils.PasswordHasher;
+import app.services.CalculationService;
 import app.services.UserService;
+import app.utils.MicroCache;
 import io.javalin.http.Handler;
 import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 public class AdminController {
+    private static final int EXPORT_BUFFER = 64 * 1024;
+
     private final UserService userService;
+    private final CalculationService calcService;
+    private final EntityManagerFactory emf;
 
     public AdminController(EntityManagerFactory emf) {
+        this.emf = emf;
         this.userService = new UserService(emf);
+        this.calcService = new CalculationService(emf);
     }
 
     public Handler panel() {
@@ -29,4 +55,78 @@ public class AdminController {
             ctx.json(out);
         };
     }
+
+    // /admin/export?from=&to=&user=&operation=&gzip=true streams the matching calculations as CSV (oldest first).
+    // The body goes to the servlet stream, past Javalin's compression; gzip=true compresses it here instead.
+    public Handler export() {
+        return ctx -> {
+            ExportFilter filter = ExportFilter.of(ctx.queryParam("from"), ctx.queryParam("to"),
+                    userId(ctx.queryParam("user")), ctx.queryParam("operation"));
+            boolean gzip = Boolean.parseBoolean(ctx.queryParam("gzip"));
+
+            ctx.contentType(gzip ? "application/gzip" : "text/csv; charset=utf-8");
+            ctx.header("Content-Disposition", "attachment; filename=\"calculations.csv" + (gzip ? ".gz" : "") + "\"");
+            // finished and flushed, not closed: the servlet stream belongs to Jetty
+            OutputStream raw = ctx.res().getOutputStream();
+            OutputStream out = gzip ? new GZIPOutputStream(raw, EXPORT_BUFFER) : new BufferedOutputStream(raw, EXPORT_BUFFER);
+            try {
+                calcService.exportCsv(filter, out);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (out instanceof GZIPOutputStream gz) gz.finish();
+            out.flush();
+        };
+    }
+
+    private Integer userId(String username) throws ApiException {
+        if (username == null || username.isBlank()) return null;
+        User user = userService.findByUsername(username.trim());
+        if (user == null) throw new ApiException(404, "User not found");
+        return user.getId();
+    }
+
+    // /admin/pool
+    public Handler pool() {
+        return ctx -> ctx.json(poolSnapshot());
+    }
+
+    private Map<String, Object> poolSnapshot() {
+        PoolMetrics pool = PoolMetrics.of(emf);
+        return pool != null ? pool.snapshot() : Map.of("enabled", false);
+    }
+
+    // Second-level (User rows) and query cache counters from Hibernate statistics
+    private Map<String, Object> cacheSnapshot() {
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        if (!stats.isStatisticsEnabled()) return Map.of("enabled", false);
+        var m = new LinkedHashMap<String, Object>();
+        m.put("secondLevelHits", stats.getSecondLevelCacheHitCount());
+        m.put("secondLevelMisses", stats.getSecondLevelCacheMissCount());
+        m.put("secondLevelPuts", stats.getSecondLevelCachePutCount());
+        m.put("queryHits", stats.getQueryCacheHitCount());
+        m.put("queryMisses", stats.getQueryCacheMissCount());
+        m.put("queryPuts", stats.getQueryCachePutCount());
+        CacheRegionStatistics users = stats.getDomainDataRegionStatistics("app.entities.User");
+        if (users != null) m.put("userEntries", users.getElementCountInMemory());
+        return m;
+    }
+
+    public Handler metrics() {
+        return ctx -> {
+            CalculationWriteBehind writer = CalculationWriteBehind.get(emf);
+            var out = new LinkedHashMap<String, Object>();
+            out.put("requests", AccessLog.requests());
+            out.put("writeBehind", writer != null ? writer.metrics() : Map.of("enabled", false));
+            out.put("jwtCache", JwtUtil.cacheMetrics());
+            out.put("passwordHashing", PasswordHasher.shared().metrics());
+            out.put("pool", poolSnapshot());
+            out.put("readRouting", ReadRouting.metrics());
+            out.put("cache", cacheSnapshot());
+            out.put("microCache", MicroCache.allMetrics());
+            DbConcurrencyLimiter limiter = DbConcurrencyLimiter.of(emf);
+            out.put("dbLimiter", limiter != null ? limiter.metrics() : Map.of("enabled", false));
+            ctx.json(out);
+        };
+    }
 }
\ No newline at end of file
@@ -1,81 +1,151 @@
 package app.controllers;
 
+import app.daos.UnitOfWork;
+import app.dtos.BatchItemRequest;
+import app.dtos.CalculationDTO;
+import app.dtos.CalculationRequest;
 import app.dtos.DTOMapper;
+import app.dtos.PageCursor;
+import app.entities.Calculation;
 import app.entities.User;
+import app.entities.enums.Operation;
+import app.exceptions.ValidationException;
+import app.routes.handling.BodyFormat;
+import app.routes.handling.ETags;
+import app.routes.handling.RouteDocs;
+import app.security.enums.Role;
 import app.services.CalculationService;
 import app.services.UserService;
+import app.utils.MicroCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import jakarta.persistence.EntityManagerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CalculationController {
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final CalculationService calcService;
     private final UserService userService;
+    // first page of /public/calculations by limit and format, serialized
+    private final MicroCache<PageKey, CachedPage> firstPages = MicroCache.fromConfig("publicCalculations");
+
+    private record PageKey(int limit, BodyFormat format) {}
+    private record CachedPage(byte[] body, String nextCursor, String etag) {}
 
     public CalculationController(EntityManagerFactory emf) {
         this.calcService = new CalculationService(emf);
         this.userService = new UserService(emf);
     }
 
-    private static class CalcReq {
-        public double num1;
-        public double num2;
-    }
-
     public Handler add() {
         return ctx -> {
-            CalcReq body = ctx.bodyAsClass(CalcReq.class);
-            String username = ctx.attribute("jwt.user");
-            User user = userService.findByUsername(username);
-            var saved = calcService.add(user, body.num1, body.num2);
-            ctx.json(DTOMapper.toCalculationDTO(saved));
+            CalculationRequest body = BodyFormat.forRequest(ctx).read(ctx, CalculationRequest.class);
+            var saved = calcService.add(currentUser(ctx), body.getNum1(), body.getNum2());
+            UnitOfWork.afterCommit(MicroCache::invalidateAll);
+            BodyFormat.forResponse(ctx).write(ctx, DTOMapper.toCalculationDTO(saved));
         };
     }
 
     public Handler subtract() {
         return ctx -> {
-            CalcReq body = ctx.bodyAsClass(CalcReq.class);
-            String username = ctx.attribute("jwt.user");
-            User user = userService.findByUsername(username);
-            var saved = calcService.subtract(user, body.num1, body.num2);
-            ctx.json(DTOMapper.toCalculationDTO(saved));
+            CalculationRequest body = BodyFormat.forRequest(ctx).read(ctx, CalculationRequest.class);
+            var saved = calcService.subtract(currentUser(ctx), body.getNum1(), body.getNum2());
+            UnitOfWork.afterCommit(MicroCache::invalidateAll);
+            BodyFormat.forResponse(ctx).write(ctx, DTOMapper.toCalculationDTO(saved));
         };
     }
 
     public Handler multiply() {
         return ctx -> {
-            CalcReq body = ctx.bodyAsClass(CalcReq.class);
-            String username = ctx.attribute("jwt.user");
-            User user = userService.findByUsername(username);
-            var saved = calcService.multiply(user, body.num1, body.num2);
-            ctx.json(DTOMapper.toCalculationDTO(saved));
+            CalculationRequest body = BodyFormat.forRequest(ctx).read(ctx, CalculationRequest.class);
+            var saved = calcService.multiply(currentUser(ctx), body.getNum1(), body.getNum2());
+            UnitOfWork.afterCommit(MicroCache::invalidateAll);
+            BodyFormat.forResponse(ctx).write(ctx, DTOMapper.toCalculationDTO(saved));
         };
     }
 
     public Handler divide() {
         return ctx -> {
-            CalcReq body = ctx.bodyAsClass(CalcReq.class);
-            String username = ctx.attribute("jwt.user");
-            User user = userService.findByUsername(username);
-            var saved = calcService.divide(user, body.num1, body.num2);
-            ctx.json(DTOMapper.toCalculationDTO(saved));
+            CalculationRequest body = BodyFormat.forRequest(ctx).read(ctx, CalculationRequest.class);
+            var saved = calcService.divide(currentUser(ctx), body.getNum1(), body.getNum2());
+            UnitOfWork.afterCommit(MicroCache::invalidateAll);
+            BodyFormat.forResponse(ctx).write(ctx, DTOMapper.toCalculationDTO(saved));
         };
     }
 
-    public Handler getAll() {
+    // Evaluates every item, then saves all valid ones in a single transaction. Results keep the request order.
+    public Handler batch() {
         return ctx -> {
-            var all = calcService.getAll().stream().map(DTOMapper::toCalculationDTO).toList();
-            ctx.json(all);
+            BatchItemRequest[] items = BodyFormat.forRequest(ctx).read(ctx, BatchItemRequest[].class);
+            if (items == null || items.length == 0) {
+                throw new ValidationException("Batch must contain at least one item");
+            }
+            if (items.length > MAX_BATCH_SIZE) {
+                throw new ValidationException("Batch cannot contain more than " + MAX_BATCH_SIZE + " items");
+            }
+
+            Role role = ctx.attribute("jwt.role");
+            User user = currentUser(ctx);
+
+            Object[] results = new Object[items.length];
+            List<Calculation> toSave = new ArrayList<>();
+            List<Integer> savedAt = new ArrayList<>();
+
+            for (int i = 0; i < items.length; i++) {
+                BatchItemRequest item = items[i];
+                Operation op = parseOperation(item == null ? null : item.getOp());
+                if (op == null) {
+                    results[i] = batchError(400, "Unknown operation");
+                } else if (!RouteDocs.allows("POST", "/calc/" + op.name().toLowerCase(), role)) {
+                    results[i] = batchError(403, "Forbidden");
+                } else {
+                    try {
+                        toSave.add(calcService.evaluate(user, op, item.getNum1(), item.getNum2()));
+                        savedAt.add(i);
+                    } catch (ValidationException e) {
+                        results[i] = batchError(400, e.getMessage());
+                    }
+                }
+            }
+
+            if (!toSave.isEmpty()) {
+                calcService.saveAll(toSave);
+                UnitOfWork.afterCommit(MicroCache::invalidateAll);
+            }
+            for (int i = 0; i < savedAt.size(); i++) {
+                var ok = new LinkedHashMap<String, Object>();
+                ok.put("status", 200);
+                ok.put("calculation", DTOMapper.toCalculationDTO(toSave.get(i)));
+                results[savedAt.get(i)] = ok;
+            }
+
+            BodyFormat.forResponse(ctx).writeValue(ctx, Arrays.asList(results));
         };
     }
 
+    // ?limit=&after= keyset paging, next page token in the X-Next-Cursor header.
+    // ?stream=json|ndjson (or Accept: application/x-ndjson) streams the full history instead: the caller's own
+    // (getMine), or every row for admins (getAll behind /admin/calculations).
+    public Handler getAll() {
+        return ctx -> respondWithListing(ctx, null);
+    }
+
     public Handler getMine() {
         return ctx -> {
-            String username = ctx.attribute("jwt.user");
-            User user = userService.findByUsername(username);
-            var mine = calcService.findAllByUser(user).stream().map(DTOMapper::toCalculationDTO).toList();
-            ctx.json(mine);
+            respondWithListing(ctx, currentUser(ctx).getId());
         };
     }
 
@@ -83,7 +153,133 @@ public class CalculationController {
         return ctx -> {
             int id = Integer.parseInt(ctx.pathParam("id"));
             calcService.deleteById(id);
+            UnitOfWork.afterCommit(MicroCache::invalidateAll);
             ctx.json(Map.<String, Object>of("deletedId", id));
         };
     }
+
+    // The caller as far as the token tells us; enough to set the FK without loading the user row.
+    // Tokens issued before the uid claim existed fall back to a lookup.
+    private User currentUser(Context ctx) {
+        String username = ctx.attribute("jwt.user");
+        Integer uid = ctx.attribute("jwt.uid");
+        if (uid == null) return userService.findByUsername(username);
+
+        User user = new User();
+        user.setId(uid);
+        user.setUsername(username);
+        user.setRole(ctx.attribute("jwt.role"));
+        return user;
+    }
+
+    private void respondWithListing(Context ctx, Integer userId) throws ValidationException, IOException {
+        String stream = ctx.queryParam("stream");
+        if (stream == null && ctx.header("Accept") != null && ctx.header("Accept").contains(NDJSON)) stream = "ndjson";
+        boolean ndjson = stream != null && stream.equalsIgnoreCase("ndjson");
+        if (stream != null && !ndjson && !stream.equalsIgnoreCase("json")) throw new ValidationException("stream must be json or ndjson");
+        // The whole table streams for admins (/admin/calculations); anonymous callers get the capped pages only
+        if (stream != null && userId == null && ctx.attribute("jwt.role") != Role.ADMIN)
+            throw new ValidationException("Streaming all calculations requires ADMIN (/admin/calculations)");
+        // ndjson is JSON by definition; everything else follows Accept
+        BodyFormat format = ndjson ? BodyFormat.JSON : BodyFormat.forResponse(ctx);
+
+        // The public first page is the same for everyone and what dashboards poll
+        if (userId == null && stream == null && ctx.queryParam("after") == null) {
+            respondWithCachedFirstPage(ctx, format);
+            return;
+        }
+
+        // Pollers that already have this version get a 304 before any listing query runs
+        String variant = ndjson ? "-ndjson" : format.etagSuffix();
+        String etag = ETags.weak((userId == null ? "all-" : "u" + userId + "-") + calcService.dataVersion(userId) + variant);
+        if (ETags.notModified(ctx, etag)) return;
+
+        if (stream == null) respondWithPage(ctx, userId, format);
+        else respondWithStream(ctx, userId, format, ndjson);
+    }
+
+    // Every row is serialized as soon as it is read; nothing but the current row is held in memory
+    private void respondWithStream(Context ctx, Integer userId, BodyFormat format, boolean ndjson) throws IOException {
+        ctx.contentType(ndjson ? NDJSON : format.mediaType());
+        JsonGenerator gen = format.mapper().getFactory().createGenerator(ctx.outputStream());
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null);
+        ObjectWriter writer = format.calculationWriter();
+        try (gen) {
+            if (!ndjson) gen.writeStartArray();
+            calcService.streamAll(userId, dto -> writeRow(gen, writer, dto, ndjson));
+            if (!ndjson) gen.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeRow(JsonGenerator gen, ObjectWriter writer, CalculationDTO dto, boolean ndjson) {
+        try {
+            writer.writeValue(gen, dto);
+            if (ndjson) gen.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void respondWithCachedFirstPage(Context ctx, BodyFormat format) throws ValidationException {
+        int limit = parseLimit(ctx.queryParam("limit"));
+        CachedPage page = firstPages.get(new PageKey(limit, format), () -> loadFirstPage(limit, format));
+        if (ETags.notModified(ctx, page.etag())) return;
+        if (page.nextCursor() != null) ctx.header("X-Next-Cursor", page.nextCursor());
+        ctx.contentType(format.mediaType()).result(page.body());
+    }
+
+    // The version is read first, so the ETag can only be older than the rows, never newer
+    private CachedPage loadFirstPage(int limit, BodyFormat format) {
+        String etag = ETags.weak("all-" + calcService.dataVersion(null) + format.etagSuffix());
+        List<CalculationDTO> rows = calcService.findPage(null, null, limit + 1);
+        String next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            next = PageCursor.of(rows.get(limit - 1)).encode();
+        }
+        return new CachedPage(format.listBytes(rows), next, etag);
+    }
+
+    private void respondWithPage(Context ctx, Integer userId, BodyFormat format) throws ValidationException {
+        int limit = parseLimit(ctx.queryParam("limit"));
+        PageCursor after = PageCursor.decode(ctx.queryParam("after"));
+
+        // one extra row tells us whether there is a next page
+        List<CalculationDTO> rows = calcService.findPage(userId, after, limit + 1);
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            ctx.header("X-Next-Cursor", PageCursor.of(rows.get(limit - 1)).encode());
+        }
+        format.writeList(ctx, rows);
+    }
+
+    private static int parseLimit(String limit) throws ValidationException {
+        if (limit == null || limit.isBlank()) return DEFAULT_PAGE_SIZE;
+        try {
+            int n = Integer.parseInt(limit.trim());
+            if (n < 1) throw new ValidationException("limit must be at least 1");
+            return Math.min(n, MAX_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("limit must be a number");
+        }
+    }
+
+    private static Operation parseOperation(String op) {
+        if (op == null) return null;
+        try {
+            return Operation.valueOf(op.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Object> batchError(int status, String message) {
+        var err = new LinkedHashMap<String, Object>();
+        err.put("status", status);
+        err.put("error", message);
+        return err;
+    }
 }
\ No newline at end of file
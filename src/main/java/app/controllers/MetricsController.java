@@ -0,0 +1,14 @@
+package app.controllers;
+
+import app.metrics.MetricsRegistry;
+import io.javalin.http.Handler;
+
+public class MetricsController {
+
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    // /metrics (Prometheus scrape target)
+    public Handler prometheus() {
+        return ctx -> ctx.contentType(PROMETHEUS_TEXT).result(MetricsRegistry.prometheus());
+    }
+}
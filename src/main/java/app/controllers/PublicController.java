@@ -1,52 +1,61 @@
 package app.controllers;
 
-import app.dtos.DTOMapper;
-import app.entities.Calculation;
+import app.routes.handling.StaticResponse;
 import app.services.CalculationService;
+import app.utils.Json;
+import app.utils.MicroCache;
 import io.javalin.http.Handler;
 import jakarta.persistence.EntityManagerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class PublicController {
     private final CalculationService calcService;
+    private final MicroCache<String, byte[]> statsCache = MicroCache.fromConfig("publicStats");
 
     public PublicController(EntityManagerFactory emf) {
         this.calcService = new CalculationService(emf);
     }
 
+    // Served from a pre-rendered copy; "time" is refreshed at most once per second
     public Handler info() {
-        return ctx -> ctx.json(Map.of(
+        return StaticResponse.json(Duration.ofSeconds(1), () -> Map.of(
                 "name", "CalcAPI",
                 "version", "1.0",
                 "time", Instant.now().toString()
         ));
     }
 
+    // Same for every caller, so a burst of requests shares one (micro-cached) query
     public Handler stats() {
-        return ctx -> {
-            var all = calcService.getAll();
-            var byOp = all.stream()
-                    .collect(Collectors.groupingBy(Calculation::getOperation, Collectors.counting()));
-            var latest = all.stream()
-                    .max(Comparator.comparing(Calculation::getTimestamp))
-                    .orElse(null);
-
-            var ordered = new LinkedHashMap<String, Object>();
-            ordered.put("total", all.size());
-            ordered.put("byOperation", byOp);
-            ordered.put("latest", latest != null ? DTOMapper.toCalculationDTO(latest) : null);
-
-            ctx.json(ordered);
-        };
+        return ctx -> ctx.contentType("application/json").result(statsCache.get("stats", this::renderStats));
+    }
+
+    private byte[] renderStats() {
+        // counters table + one index lookup instead of loading every calculation
+        var byOp = calcService.countByOperation();
+        long total = byOp.values().stream().mapToLong(Long::longValue).sum();
+        var latest = calcService.findLatest();
+
+        var ordered = new LinkedHashMap<String, Object>();
+        ordered.put("total", total);
+        ordered.put("byOperation", byOp);
+        ordered.put("latest", latest);
+
+        try {
+            return Json.MAPPER.writeValueAsBytes(ordered);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public Handler examples() {
-        return ctx -> ctx.json(Map.of(
+        return StaticResponse.json(() -> Map.of(
                 "add", Map.of("method", "POST", "path", "/api/calc/add", "body", Map.of("num1", 2, "num2", 5)),
                 "subtract", Map.of("method", "POST", "path", "/api/calc/subtract", "body", Map.of("num1", 10, "num2", 3)),
                 "multiply", Map.of("method", "POST", "path", "/api/calc/multiply", "body", Map.of("num1", 6, "num2", 7)),
@@ -1,15 +1,41 @@
 package app.daos;
 
+import app.config.HibernateConfig;
 import app.daos.interfaces.IDAO;
+import app.dtos.CalculationDTO;
+import app.dtos.ExportFilter;
+import app.dtos.PageCursor;
 import app.entities.Calculation;
 import app.entities.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.postgresql.PGConnection;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class CalculationDAO implements IDAO<Calculation, Integer> {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Read paths project straight into the DTO: one statement, no managed entities and no User (password) hydration
+    private static final String SELECT_DTO =
+            "SELECT new app.dtos.CalculationDTO(c.id, c.num1, c.num2, c.result, c.operation, c.timestamp, u.username) " +
+            "FROM Calculation c JOIN c.user u";
+
+    // the primary; read-only methods go through ReadRouting.forRead(emf) and may land on a replica
     private final EntityManagerFactory emf;
 
     public CalculationDAO(EntityManagerFactory emf) {
@@ -18,59 +44,197 @@ public class CalculationDAO implements IDAO<Calculation, Integer> {
 
     @Override
     public Calculation create(Calculation entity) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            em.persist(entity);
-            em.getTransaction().commit();
-            return entity;
+        User user = entity.getUser();
+        try {
+            return UnitOfWork.write(emf, em -> {
+                attachUser(em, entity);
+                em.persist(entity);
+                OperationCounters.add(em, entity.getOperation(), 1);
+                DataVersions.bump(em, userIds(Collections.singletonList(user)));
+                return entity;
+            });
+        } finally {
+            entity.setUser(user);
+        }
+    }
+
+    // Persists all calculations in one transaction, flushing every JDBC batch so the persistence context stays small.
+    // Only the flushed calculations are detached: in a unit of work the EntityManager also holds whatever else the
+    // request loaded or changed, and clearing it would silently drop those changes.
+    public List<Calculation> createAll(List<Calculation> entities) {
+        List<User> users = entities.stream().map(Calculation::getUser).toList();
+        try {
+            return UnitOfWork.write(emf, em -> {
+                Map<String, Long> perOperation = new HashMap<>();
+                for (int i = 0; i < entities.size(); i++) {
+                    attachUser(em, entities.get(i));
+                    em.persist(entities.get(i));
+                    perOperation.merge(entities.get(i).getOperation(), 1L, Long::sum);
+                    if ((i + 1) % HibernateConfig.JDBC_BATCH_SIZE == 0) {
+                        em.flush();
+                        for (int j = i + 1 - HibernateConfig.JDBC_BATCH_SIZE; j <= i; j++) em.detach(entities.get(j));
+                    }
+                }
+                perOperation.forEach((op, n) -> OperationCounters.add(em, op, n));
+                if (!entities.isEmpty()) DataVersions.bump(em, userIds(users));
+                return entities;
+            });
+        } finally {
+            for (int i = 0; i < entities.size(); i++) entities.get(i).setUser(users.get(i));
+        }
+    }
+
+    // Distinct owner ids in ascending order, so concurrent writers bump the version rows in the same order
+    // (users without an id are skipped)
+    private static Set<Integer> userIds(List<User> users) {
+        Set<Integer> ids = new TreeSet<>();
+        for (User u : users) if (u != null && u.getId() != null) ids.add(u.getId());
+        return ids;
+    }
+
+    // Only the FK is needed for the insert, so a user that is not managed here becomes a reference (no SELECT).
+    // create/createAll put the caller's User back afterwards so its username stays readable once the EM is closed.
+    private static void attachUser(EntityManager em, Calculation calc) {
+        User user = calc.getUser();
+        if (user != null && user.getId() != null && !em.contains(user)) {
+            calc.setUser(em.getReference(User.class, user.getId()));
         }
     }
 
     @Override
     public Calculation findById(Integer id) {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.find(Calculation.class, id);
-        }
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> em.find(Calculation.class, id));
     }
 
     @Override
     public List<Calculation> getAll() {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery(
-                    "SELECT DISTINCT c " +
-                            "FROM Calculation c " +
-                            "LEFT JOIN FETCH c.user " +
-                            "ORDER BY c.timestamp DESC",
-                    Calculation.class
-            ).getResultList();
-        }
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> em.createQuery(
+                "SELECT c " +
+                        "FROM Calculation c " +
+                        "JOIN FETCH c.user " +
+                        "ORDER BY c.timestamp DESC",
+                Calculation.class
+        ).getResultList());
     }
 
     @Override
     public Calculation update(Calculation entity) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            Calculation updated = em.merge(entity);
-            em.getTransaction().commit();
-            return updated;
-        }
+        return UnitOfWork.write(emf, em -> {
+            Calculation merged = em.merge(entity);
+            DataVersions.bump(em, userIds(Collections.singletonList(merged.getUser())));
+            return merged;
+        });
     }
 
     @Override
     public void delete(Integer id) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
+        deleteIfExists(id);
+    }
+
+    // false when there was no such calculation
+    public boolean deleteIfExists(Integer id) {
+        return UnitOfWork.write(emf, em -> {
             Calculation c = em.find(Calculation.class, id);
-            if (c != null) em.remove(c);
-            em.getTransaction().commit();
-        }
+            if (c == null) return false;
+            Integer ownerId = c.getUser() != null ? c.getUser().getId() : null;
+            em.remove(c);
+            OperationCounters.add(em, c.getOperation(), -1);
+            DataVersions.bump(em, ownerId != null ? Set.of(ownerId) : Set.of());
+            return true;
+        });
     }
 
     public List<Calculation> findAllByUser(User user) {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery("SELECT c FROM Calculation c WHERE c.user = :user", Calculation.class)
-                    .setParameter("user", user)
-                    .getResultList();
-        }
+        return UnitOfWork.read(ReadRouting.forRead(emf), em ->
+                em.createQuery("SELECT c FROM Calculation c JOIN FETCH c.user WHERE c.user = :user", Calculation.class)
+                        .setParameter("user", user)
+                        .getResultList());
+    }
+
+    // Version of the listing for userId (null = all calculations); changes whenever create/delete touch it
+    public long dataVersion(Integer userId) {
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> DataVersions.current(em, userId));
+    }
+
+    public Map<String, Long> countByOperation() {
+        return UnitOfWork.read(ReadRouting.forRead(emf), OperationCounters::totals);
+    }
+
+    // Served by idx_calculations_timestamp_id, so it reads one index entry instead of the table
+    public CalculationDTO findLatest() {
+        return UnitOfWork.read(ReadRouting.forRead(emf), em ->
+                em.createQuery(SELECT_DTO + " ORDER BY c.timestamp DESC, c.id DESC", CalculationDTO.class)
+                        .setMaxResults(1)
+                        .getResultStream().findFirst().orElse(null));
+    }
+
+    // Keyset page, newest first. userId == null means all users, after == null means the first page.
+    public List<CalculationDTO> findPage(Integer userId, PageCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder(SELECT_DTO + " WHERE 1 = 1");
+        if (userId != null) jpql.append(" AND c.user.id = :userId");
+        // the redundant "timestamp <= :ts" gives Postgres an index range to start from
+        if (after != null) jpql.append(" AND c.timestamp <= :ts AND (c.timestamp < :ts OR c.id < :id)");
+        jpql.append(" ORDER BY c.timestamp DESC, c.id DESC");
+
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> {
+            TypedQuery<CalculationDTO> query = em.createQuery(jpql.toString(), CalculationDTO.class);
+            if (userId != null) query.setParameter("userId", userId);
+            if (after != null) {
+                query.setParameter("ts", after.timestamp());
+                query.setParameter("id", after.id());
+            }
+            return query.setMaxResults(limit).getResultList();
+        });
+    }
+
+    // Hands every row (newest first) to the sink as it is read, so memory does not grow with the table.
+    public void streamAll(Integer userId, Consumer<CalculationDTO> sink) {
+        String jpql = SELECT_DTO +
+                (userId != null ? " WHERE c.user.id = :userId" : "") +
+                " ORDER BY c.timestamp DESC, c.id DESC";
+
+        UnitOfWork.read(ReadRouting.forRead(emf), em -> {
+            // pgjdbc only honours the fetch size (server-side cursor) inside a transaction; a unit of work has one once it has written
+            boolean ownTransaction = !em.getTransaction().isActive();
+            if (ownTransaction) em.getTransaction().begin();
+            try {
+                TypedQuery<CalculationDTO> query = em.createQuery(jpql, CalculationDTO.class)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true);
+                if (userId != null) query.setParameter("userId", userId);
+                try (Stream<CalculationDTO> rows = query.getResultStream()) {
+                    rows.forEach(sink);
+                }
+            } finally {
+                if (ownTransaction) em.getTransaction().rollback();
+            }
+            return null;
+        });
+    }
+
+    // COPY ... TO STDOUT: Postgres renders the CSV and pgjdbc passes it to out as it arrives, so there are no rows,
+    // entities or JSON in between and memory stays flat. Returns the number of rows written.
+    public long exportCsv(ExportFilter filter, OutputStream out) {
+        String sql = "COPY (" + exportQuery(filter) + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            try {
+                // a failing write (client gone) makes pgjdbc cancel the COPY before rethrowing
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    // COPY takes no bind parameters; the filter only holds parsed dates, an int and an enum, so the literals are safe
+    static String exportQuery(ExportFilter filter) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT c.id, c.timestamp, u.username, c.operation, c.num1, c.num2, c.result " +
+                "FROM calculations c JOIN users u ON u.id = c.user_id WHERE true");
+        if (filter.from() != null) sql.append(" AND c.timestamp >= '").append(filter.from()).append("'::timestamp");
+        if (filter.to() != null) sql.append(" AND c.timestamp < '").append(filter.to()).append("'::timestamp");
+        if (filter.userId() != null) sql.append(" AND c.user_id = ").append(filter.userId().intValue());
+        if (filter.operation() != null) sql.append(" AND c.operation = '").append(filter.operation().name()).append("'");
+        return sql.append(" ORDER BY c.timestamp, c.id").toString();
     }
 }
@@ -0,0 +1,173 @@
+package app.daos;
+
+import app.entities.Calculation;
+import app.utils.MicroCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Write-behind for calculations: the request thread only puts the entity on a bounded queue,
+and one writer thread saves whatever has piled up (max batchSize rows or maxDelayMs) in a single commit.
+If the queue stays full for offerTimeoutMs the caller gets false and should write synchronously instead,
+so a slow database slows requests down rather than dropping rows.
+ */
+
+public class CalculationWriteBehind implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalculationWriteBehind.class);
+    private static final Map<EntityManagerFactory, CalculationWriteBehind> WRITERS = new ConcurrentHashMap<>();
+
+    private final CalculationDAO calcDAO;
+    private final BlockingQueue<Calculation> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayMs;
+    private final long offerTimeoutMs;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder syncFallbacks = new LongAdder();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+    private final AtomicInteger largestBatchSize = new AtomicInteger();
+
+    private CalculationWriteBehind(EntityManagerFactory emf, int capacity, int batchSize, long maxDelayMs, long offerTimeoutMs) {
+        this.calcDAO = new CalculationDAO(emf);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.worker = new Thread(this::run, "calc-write-behind");
+        this.worker.setDaemon(true);
+    }
+
+    public static CalculationWriteBehind start(EntityManagerFactory emf, int capacity, int batchSize, long maxDelayMs, long offerTimeoutMs) {
+        return WRITERS.computeIfAbsent(emf, key -> {
+            CalculationWriteBehind writer = new CalculationWriteBehind(key, capacity, batchSize, maxDelayMs, offerTimeoutMs);
+            writer.worker.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "calc-write-behind-flush"));
+            logger.info("Write-behind started (capacity {}, batch {}, delay {} ms)", capacity, batchSize, maxDelayMs);
+            return writer;
+        });
+    }
+
+    // null when write-behind is not enabled for this EntityManagerFactory
+    public static CalculationWriteBehind get(EntityManagerFactory emf) {
+        return WRITERS.get(emf);
+    }
+
+    public static void stopAll() {
+        for (EntityManagerFactory emf : WRITERS.keySet()) {
+            CalculationWriteBehind writer = WRITERS.remove(emf);
+            if (writer != null) writer.close();
+        }
+    }
+
+    // Returns false if the queue stayed full (or we are shutting down); the caller must then persist it itself
+    public boolean submit(Calculation calc) {
+        if (!running) return false;
+        try {
+            if (queue.offer(calc, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncFallbacks.increment();
+        return false;
+    }
+
+    private void run() {
+        List<Calculation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Calculation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Group commit: keep collecting until the batch is full or the oldest row has waited maxDelayMs
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                queue.drainTo(batch, batchSize - batch.size());
+                while (running && batch.size() < batchSize) {
+                    long waitNanos = deadline - System.nanoTime();
+                    if (waitNanos <= 0) break;
+                    Calculation next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) flush(batch);
+        }
+    }
+
+    private void flush(List<Calculation> batch) {
+        try {
+            calcDAO.createAll(batch);
+            MicroCache.invalidateAll();
+            written.add(batch.size());
+            batches.increment();
+            lastBatchSize.set(batch.size());
+            largestBatchSize.accumulateAndGet(batch.size(), Math::max);
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            logger.error("Write-behind could not save {} calculations", batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // Stops accepting new rows and waits for everything already queued to be written
+    @Override
+    public void close() {
+        if (!running && !worker.isAlive()) return;
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Rows that slipped in while the worker was exiting are written here on the closing thread
+        List<Calculation> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+        logger.info("Write-behind flushed and stopped");
+    }
+
+    public Map<String, Object> metrics() {
+        long batchCount = batches.sum();
+        long writtenCount = written.sum();
+        var m = new LinkedHashMap<String, Object>();
+        m.put("enabled", true);
+        m.put("queueDepth", queue.size());
+        m.put("capacity", capacity);
+        m.put("enqueued", enqueued.sum());
+        m.put("written", writtenCount);
+        m.put("batches", batchCount);
+        m.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) writtenCount / batchCount);
+        m.put("lastBatchSize", lastBatchSize.get());
+        m.put("largestBatchSize", largestBatchSize.get());
+        m.put("syncFallbacks", syncFallbacks.sum());
+        m.put("failed", failed.sum());
+        return m;
+    }
+}
@@ -0,0 +1,51 @@
+package app.daos;
+
+import app.entities.DataVersion;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Versions of the calculation data, kept in the database so every app node sees the same numbers.
+Writes bump them inside the caller's transaction, so a version is visible exactly when the rows it covers are.
+A reader that takes the version before running its query can therefore only be too cautious (new rows, old version),
+never serve old rows under a new version.
+ */
+
+public final class DataVersions {
+    private DataVersions() {}
+
+    public static final int ALL = 0;
+    private static final int STRIPES = 16;
+
+    private static final String BUMP =
+            "INSERT INTO data_versions (scope, stripe, version) VALUES (?1, ?2, 1) " +
+            "ON CONFLICT (scope, stripe) DO UPDATE SET version = data_versions.version + 1";
+
+    // Marks the global listing and each given user's listing as changed
+    public static void bump(EntityManager em, Collection<Integer> userIds) {
+        bumpScope(em, ALL);
+        for (Integer userId : userIds) {
+            if (userId != null && userId != ALL) bumpScope(em, userId);
+        }
+    }
+
+    private static void bumpScope(EntityManager em, int scope) {
+        em.createNativeQuery(BUMP)
+                .setParameter(1, scope)
+                .setParameter(2, ThreadLocalRandom.current().nextInt(STRIPES))
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(DataVersion.class) // don't invalidate unrelated cache regions
+                .executeUpdate();
+    }
+
+    // userId == null means the version of all calculations; 0 until anything has been written
+    public static long current(EntityManager em, Integer userId) {
+        Number sum = em.createQuery("SELECT SUM(v.version) FROM DataVersion v WHERE v.scope = :scope", Number.class)
+                .setParameter("scope", userId == null ? ALL : userId)
+                .getSingleResult();
+        return sum == null ? 0 : sum.longValue();
+    }
+}
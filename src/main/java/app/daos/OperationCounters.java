@@ -0,0 +1,78 @@
+package app.daos;
+
+import app.entities.OperationCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Keeps operation_counters in step with the calculations table.
+Every change runs inside the caller's transaction, so the counters commit (or roll back) together with the rows.
+ */
+
+public final class OperationCounters {
+    private OperationCounters() {}
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationCounters.class);
+    private static final int STRIPES = 16;
+
+    private static final String UPSERT =
+            "INSERT INTO operation_counters (operation, stripe, total) VALUES (?1, ?2, ?3) " +
+            "ON CONFLICT (operation, stripe) DO UPDATE SET total = operation_counters.total + EXCLUDED.total";
+
+    // delta may be negative (deletes); a single stripe can go below zero, only the sum matters
+    public static void add(EntityManager em, String operation, long delta) {
+        if (delta == 0) return;
+        em.createNativeQuery(UPSERT)
+                .setParameter(1, operation)
+                .setParameter(2, ThreadLocalRandom.current().nextInt(STRIPES))
+                .setParameter(3, delta)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OperationCounter.class) // don't invalidate unrelated cache regions
+                .executeUpdate();
+    }
+
+    // operation -> count, only operations that currently have calculations
+    public static Map<String, Long> totals(EntityManager em) {
+        List<Object[]> rows = em.createQuery(
+                "SELECT o.operation, SUM(o.total) FROM OperationCounter o GROUP BY o.operation", Object[].class
+        ).getResultList();
+
+        Map<String, Long> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            long total = ((Number) row[1]).longValue();
+            if (total > 0) totals.put((String) row[0], total);
+        }
+        return totals;
+    }
+
+    // Fills the counters from the existing calculations the first time the app runs against a database.
+    // The SHARE lock waits for in-flight inserts, which would already have created counter rows.
+    public static void seedIfEmpty(EntityManagerFactory emf) {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                em.createNativeQuery("LOCK TABLE calculations IN SHARE MODE").executeUpdate();
+                Number existing = (Number) em.createNativeQuery("SELECT COUNT(*) FROM operation_counters").getSingleResult();
+                if (existing.longValue() == 0) {
+                    int seeded = em.createNativeQuery(
+                            "INSERT INTO operation_counters (operation, stripe, total) " +
+                            "SELECT operation, 0, COUNT(*) FROM calculations GROUP BY operation"
+                    ).executeUpdate();
+                    if (seeded > 0) logger.info("Seeded operation counters for {} operations", seeded);
+                }
+                em.getTransaction().commit();
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                logger.warn("Could not seed operation counters (is the schema created?): {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package app.daos;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Sends DAO reads to a read replica when one is registered for the primary EntityManagerFactory.
+Read-your-writes: once the current request has written (or asked for X-Consistency: strong) its thread is pinned
+to the primary, so it never reads a replica that has not caught up with its own write yet.
+The pin is per thread and is cleared at the start and end of every request.
+ */
+
+public final class ReadRouting {
+
+    private static final Map<EntityManagerFactory, EntityManagerFactory> REPLICAS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private static final LongAdder replicaReads = new LongAdder();
+    private static final LongAdder primaryReads = new LongAdder();
+    private static final LongAdder pinnedReads = new LongAdder();
+
+    private ReadRouting() {
+    }
+
+    public static void register(EntityManagerFactory primary, EntityManagerFactory replica) {
+        REPLICAS.put(primary, replica);
+    }
+
+    public static void unregister(EntityManagerFactory primary) {
+        REPLICAS.remove(primary);
+    }
+
+    // Where a read-only DAO method should open its EntityManager
+    public static EntityManagerFactory forRead(EntityManagerFactory primary) {
+        EntityManagerFactory replica = REPLICAS.get(primary);
+        if (replica == null) {
+            primaryReads.increment();
+            return primary;
+        }
+        if (isPinned()) {
+            pinnedReads.increment();
+            return primary;
+        }
+        replicaReads.increment();
+        return replica;
+    }
+
+    // Called after a write commits; the rest of this request reads from the primary
+    public static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    public static Map<String, Object> metrics() {
+        var m = new LinkedHashMap<String, Object>();
+        m.put("replicas", REPLICAS.size());
+        m.put("replicaReads", replicaReads.sum());
+        m.put("primaryReads", primaryReads.sum());
+        m.put("pinnedReads", pinnedReads.sum());
+        return m;
+    }
+}
@@ -0,0 +1,199 @@
+package app.daos;
+
+import app.metrics.RequestTimer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+One EntityManager and one transaction per request. ApplicationConfig begins it in a before-handler, marks it
+rollback-only from the exception handlers and ends it (commit or rollback) in an after-handler.
+DAOs join it through read/write; nothing is opened until the first DAO call, so requests that never touch
+the database cost nothing. The transaction starts at the first write: reads before it run in autocommit, so a
+read the second-level cache answers takes no connection at all. Without a unit of work (tests, background threads) every call runs on its own
+EntityManager and transaction as before.
+There is one EntityManager per factory, so a request that reads the replica and writes the primary uses one
+connection to each; everything else uses exactly one.
+ */
+
+public class UnitOfWork {
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Map<EntityManagerFactory, EntityManager> open = new LinkedHashMap<>(2);
+    private final List<Runnable> onCommit = new ArrayList<>(0);
+    // the after-handler of an async request may end the unit on another thread than the one that began it
+    private volatile boolean rollbackOnly;
+    private volatile boolean closed;
+
+    private UnitOfWork() {
+    }
+
+    // Starts a unit of work bound to the calling thread, replacing anything a previous request left behind
+    public static UnitOfWork begin() {
+        UnitOfWork stale = CURRENT.get();
+        if (stale != null && !stale.closed) {
+            stale.rollbackOnly = true;
+            stale.end();
+        }
+        UnitOfWork uow = new UnitOfWork();
+        CURRENT.set(uow);
+        return uow;
+    }
+
+    // The unit of work of this thread, or null
+    public static UnitOfWork current() {
+        UnitOfWork uow = CURRENT.get();
+        return uow != null && !uow.closed ? uow : null;
+    }
+
+    // Ends this thread's unit of work now (commit or rollback) and unbinds it. Async handlers call this before
+    // handing off, so no EntityManager or connection is held while the request waits; the after-handler's end()
+    // is then a no-op
+    public static void endCurrent() {
+        UnitOfWork uow = current();
+        if (uow != null) uow.end();
+    }
+
+    // Runs work in a unit of work of its own on this thread, committed when work returns and rolled back if it
+    // throws; for the continuation of an async handler. Whatever was bound to the thread before is put back.
+    public static <T> T runInNew(Supplier<T> work) {
+        UnitOfWork previous = CURRENT.get();
+        boolean pinned = ReadRouting.isPinned();
+        UnitOfWork uow = new UnitOfWork();
+        CURRENT.set(uow);
+        try {
+            T result;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                uow.setRollbackOnly();
+                throw e;
+            } finally {
+                uow.end();
+            }
+            return result;
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+            if (!pinned) ReadRouting.clear();
+        }
+    }
+
+    // Runs action once this thread's unit of work has committed, and never if it rolls back (e.g. dropping caches
+    // of data the request changed). Without a unit the caller's write has already committed, so it runs right away.
+    public static void afterCommit(Runnable action) {
+        UnitOfWork uow = current();
+        if (uow == null) action.run();
+        else uow.onCommit.add(action);
+    }
+
+    public static <T> T read(EntityManagerFactory emf, Function<EntityManager, T> work) {
+        long start = System.nanoTime();
+        try {
+            UnitOfWork uow = current();
+            if (uow != null) return work.apply(uow.entityManager(emf));
+            try (EntityManager em = emf.createEntityManager()) {
+                return work.apply(em);
+            }
+        } finally {
+            RequestTimer.addDb(System.nanoTime() - start);
+        }
+    }
+
+    // Flushes at the end so constraint violations surface inside the handler, where they roll the request back
+    public static <T> T write(EntityManagerFactory emf, Function<EntityManager, T> work) {
+        long start = System.nanoTime();
+        try {
+            return doWrite(emf, work);
+        } finally {
+            RequestTimer.addDb(System.nanoTime() - start);
+        }
+    }
+
+    private static <T> T doWrite(EntityManagerFactory emf, Function<EntityManager, T> work) {
+        UnitOfWork uow = current();
+        T result;
+        if (uow != null) {
+            EntityManager em = uow.entityManager(emf);
+            try {
+                if (!em.getTransaction().isActive()) em.getTransaction().begin();
+                result = work.apply(em);
+                em.flush();
+            } catch (RuntimeException e) {
+                uow.setRollbackOnly();
+                throw e;
+            }
+        } else {
+            try (EntityManager em = emf.createEntityManager()) {
+                try {
+                    em.getTransaction().begin();
+                    result = work.apply(em);
+                    em.getTransaction().commit();
+                } catch (RuntimeException e) {
+                    if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                    throw e;
+                }
+            }
+        }
+        ReadRouting.pinToPrimary();
+        return result;
+    }
+
+    private EntityManager entityManager(EntityManagerFactory emf) {
+        EntityManager em = open.get(emf);
+        if (em == null) {
+            em = emf.createEntityManager();
+            open.put(emf, em);
+        }
+        return em;
+    }
+
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    // Commits (or rolls back) and closes everything; a failed commit rolls back the rest and is rethrown
+    public void end() {
+        if (closed) return;
+        long start = System.nanoTime();
+        try {
+            finish();
+        } finally {
+            RequestTimer.addDb(System.nanoTime() - start);
+        }
+    }
+
+    private void finish() {
+        closed = true;
+        if (CURRENT.get() == this) CURRENT.remove();
+
+        RuntimeException failure = null;
+        for (EntityManager em : open.values()) {
+            try {
+                if (em.getTransaction().isActive()) {
+                    if (rollbackOnly || failure != null) em.getTransaction().rollback();
+                    else em.getTransaction().commit();
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            } finally {
+                em.close();
+            }
+        }
+        open.clear();
+        if (failure != null) throw failure;
+        if (!rollbackOnly) onCommit.forEach(Runnable::run);
+    }
+}
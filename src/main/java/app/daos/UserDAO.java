@@ -2,9 +2,8 @@ package app.daos;
 
 import app.daos.interfaces.IDAO;
 import app.entities.User;
-import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.NoResultException;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.List;
 
@@ -18,55 +17,51 @@ public class UserDAO implements IDAO<User, Integer> {
 
     @Override
     public User create(User entity) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
+        return UnitOfWork.write(emf, em -> {
             em.persist(entity);
-            em.getTransaction().commit();
             return entity;
-        }
+        });
     }
 
     @Override
     public User findById(Integer id) {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.find(User.class, id);
-        }
+        // Primary only: it is served from the second-level cache, which only the primary's writes keep correct
+        return UnitOfWork.read(emf, em -> em.find(User.class, id));
     }
 
     @Override
     public List<User> getAll() {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery("SELECT u FROM User u", User.class).getResultList();
-        }
+        return UnitOfWork.read(ReadRouting.forRead(emf), em -> em.createQuery("SELECT u FROM User u", User.class).getResultList());
     }
 
     @Override
     public User update(User entity) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            User updated = em.merge(entity);
-            em.getTransaction().commit();
-            return updated;
-        }
+        return UnitOfWork.write(emf, em -> em.merge(entity));
     }
 
     @Override
     public void delete(Integer id) {
-        try (EntityManager em = emf.createEntityManager()) {
-            em.getTransaction().begin();
+        UnitOfWork.write(emf, em -> {
             User user = em.find(User.class, id);
-            if (user != null) em.remove(user);
-            em.getTransaction().commit();
-        }
+            if (user != null) {
+                // the user's calculations go with it (cascade), so take them off the stats counters too
+                em.createQuery("SELECT c.operation, COUNT(c) FROM Calculation c WHERE c.user = :user GROUP BY c.operation", Object[].class)
+                        .setParameter("user", user)
+                        .getResultList()
+                        .forEach(row -> OperationCounters.add(em, (String) row[0], -((Number) row[1]).longValue()));
+                em.remove(user);
+            }
+            return null;
+        });
     }
 
     public User findByUsername(String username) {
-        try (EntityManager em = emf.createEntityManager()) {
-            return em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
-                    .setParameter("username", username)
-                    .getSingleResult();
-        } catch (NoResultException e) {
-            return null;
-        }
+        // Cached query (ids) + cached User rows: a repeat lookup runs no SQL. Primary only, like findById.
+        // (getResultList, not a stream: streamed results bypass the query cache)
+        List<User> found = UnitOfWork.read(emf, em -> em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
+                .setParameter("username", username)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList());
+        return found.isEmpty() ? null : found.get(0);
     }
 }
@@ -2,6 +2,7 @@ package app.daos.interfaces;
 
 import java.util.List;
 
+// Implementations run on the request's UnitOfWork when there is one, otherwise on their own EntityManager
 public interface IDAO<T, I> {
     //CREATE
     T create(T entity);
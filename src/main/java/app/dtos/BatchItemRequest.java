@@ -0,0 +1,15 @@
+package app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One item of the POST /calc/batch body
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemRequest {
+    private String op;
+    private double num1;
+    private double num2;
+}
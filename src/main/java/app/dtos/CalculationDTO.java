@@ -21,7 +21,7 @@ public class CalculationDTO {
     private String username;
 
     public CalculationDTO(Calculation calc) {
-        this.id = calc.getId();
+        this.id = calc.getId() != null ? calc.getId() : 0; // 0 = not inserted yet (write-behind)
         this.num1 = calc.getNum1();
         this.num2 = calc.getNum2();
         this.result = calc.getResult();
@@ -0,0 +1,14 @@
+package app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Body of POST /calc/{operation}
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalculationRequest {
+    private double num1;
+    private double num2;
+}
@@ -0,0 +1,43 @@
+package app.dtos;
+
+import app.entities.enums.Operation;
+import app.exceptions.ValidationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/*
+Filters of /admin/export: timestamp range [from, to), one user and one operation, each optional (null).
+Everything is parsed into typed values here, because the export query is built as text (COPY takes no parameters).
+ */
+
+public record ExportFilter(LocalDateTime from, LocalDateTime to, Integer userId, Operation operation) {
+
+    // from/to are ISO dates (2025-01-31) or date-times (2025-01-31T12:00); operation is a name like "add"
+    public static ExportFilter of(String from, String to, Integer userId, String operation) throws ValidationException {
+        LocalDateTime start = parseTime("from", from);
+        LocalDateTime end = parseTime("to", to);
+        if (start != null && end != null && !start.isBefore(end)) throw new ValidationException("from must be before to");
+        return new ExportFilter(start, end, userId, parseOperation(operation));
+    }
+
+    private static LocalDateTime parseTime(String name, String value) throws ValidationException {
+        if (value == null || value.isBlank()) return null;
+        String v = value.trim();
+        try {
+            return v.contains("T") ? LocalDateTime.parse(v) : LocalDate.parse(v).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException(name + " must be an ISO date or date-time");
+        }
+    }
+
+    private static Operation parseOperation(String value) throws ValidationException {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Operation.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Unknown operation");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package app.dtos;
+
+import app.exceptions.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/*
+Keyset position in the calculation history (ordered by timestamp DESC, id DESC).
+Sent to clients as an opaque base64url token in the X-Next-Cursor header and read back from ?after=
+ */
+
+public record PageCursor(LocalDateTime timestamp, int id) {
+
+    public static PageCursor of(CalculationDTO calc) {
+        return new PageCursor(calc.getTimestamp(), calc.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // null/blank means "first page"
+    public static PageCursor decode(String token) throws ValidationException {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, sep)), Integer.parseInt(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+}
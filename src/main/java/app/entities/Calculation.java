@@ -8,7 +8,11 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "calculations")
+@Table(name = "calculations", indexes = {
+        // keyset pagination: ORDER BY timestamp DESC, id DESC (btree is scanned backwards)
+        @Index(name = "idx_calculations_timestamp_id", columnList = "timestamp, id"),
+        @Index(name = "idx_calculations_user_timestamp_id", columnList = "user_id, timestamp, id")
+})
 public class Calculation {
 
     @Id
@@ -30,7 +34,7 @@ public class Calculation {
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 }
@@ -0,0 +1,41 @@
+package app.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/*
+Change counter for calculation data, read by the listings to build their ETags.
+scope 0 is all calculations, any other scope is the user id whose calculations changed.
+Like OperationCounter it is striped: a change adds 1 to one random stripe, the version is the sum over the stripes,
+so it only ever grows and concurrent writers rarely touch the same row. Maintained by app.daos.DataVersions.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "data_versions")
+@IdClass(DataVersion.Key.class)
+public class DataVersion {
+
+    @Id
+    private int scope;
+
+    @Id
+    private int stripe;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int scope;
+        private int stripe;
+    }
+}
@@ -0,0 +1,40 @@
+package app.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/*
+Running count of calculations per operation for /public/stats.
+Each operation is split over several stripes (rows) so concurrent inserts don't all update the same row;
+the real count is the sum over the stripes. Maintained by app.daos.OperationCounters.
+ */
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "operation_counters")
+@IdClass(OperationCounter.Key.class)
+public class OperationCounter {
+
+    @Id
+    private String operation;
+
+    @Id
+    private int stripe;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String operation;
+        private int stripe;
+    }
+}
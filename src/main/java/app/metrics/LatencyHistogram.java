@@ -0,0 +1,46 @@
+package app.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+HdrHistogram latency histogram with wait-free recording: request threads only write into the Recorder,
+the scrape swaps out the interval histogram and folds it into the running total.
+Values are kept in microseconds from 1 µs to 60 s with 2 significant digits (~1% error, ~20 KB per histogram).
+ */
+
+public class LatencyHistogram {
+
+    private static final long HIGHEST_MICROS = TimeUnit.SECONDS.toMicros(60);
+    private static final int DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(1, HIGHEST_MICROS, DIGITS);
+    private final Histogram total = new Histogram(1, HIGHEST_MICROS, DIGITS);
+    private final LongAdder sumNanos = new LongAdder();
+    private Histogram interval;
+
+    public void recordNanos(long nanos) {
+        long micros = Math.min(Math.max(1, nanos / 1_000), HIGHEST_MICROS);
+        recorder.recordValue(micros);
+        sumNanos.add(nanos);
+    }
+
+    // Everything recorded so far; only the scrape calls this, so the lock never meets a request thread
+    public synchronized Snapshot snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return new Snapshot(
+                total.getTotalCount(),
+                sumNanos.sum() / 1e9,
+                total.getValueAtPercentile(50) / 1e6,
+                total.getValueAtPercentile(95) / 1e6,
+                total.getValueAtPercentile(99) / 1e6,
+                total.getMaxValue() / 1e6);
+    }
+
+    // Times in seconds
+    public record Snapshot(long count, double sum, double p50, double p95, double p99, double max) {}
+}
@@ -0,0 +1,150 @@
+package app.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+Process-wide request metrics, rendered in the Prometheus text format for /api/metrics.
+Recording is lock-free: LongAdders for counters and gauges, HdrHistogram recorders for latencies,
+and map lookups that only take a lock the first time a route/status combination shows up.
+Routes are the registered route templates (see RouteDocs.routeLabel), never raw paths, so the number of series stays fixed.
+ */
+
+public final class MetricsRegistry {
+    private MetricsRegistry() {}
+
+    private record RouteKey(String method, String route) {}
+    private record StatusKey(String method, String route, int status) {}
+
+    private static final Map<StatusKey, LongAdder> REQUESTS = new ConcurrentHashMap<>();
+    private static final Map<RouteKey, LatencyHistogram> LATENCY = new ConcurrentHashMap<>();
+    private static final Map<RouteKey, LatencyHistogram> DB_TIME = new ConcurrentHashMap<>();
+    private static final LongAdder IN_FLIGHT = new LongAdder();
+    private static final LatencyHistogram JWT_VERIFY = new LatencyHistogram();
+
+    public static void requestStarted() {
+        IN_FLIGHT.increment();
+    }
+
+    public static void requestFinished(String method, String route, int status, long nanos, long dbNanos) {
+        IN_FLIGHT.decrement();
+        RouteKey key = new RouteKey(method, route);
+        lookup(REQUESTS, new StatusKey(method, route, status), k -> new LongAdder()).increment();
+        lookup(LATENCY, key, k -> new LatencyHistogram()).recordNanos(nanos);
+        lookup(DB_TIME, key, k -> new LatencyHistogram()).recordNanos(dbNanos);
+    }
+
+    public static void jwtVerified(long nanos) {
+        JWT_VERIFY.recordNanos(nanos);
+    }
+
+    // get() first: computeIfAbsent may lock the bin even when the key is already there
+    private static <K, V> V lookup(Map<K, V> map, K key, Function<K, V> create) {
+        V v = map.get(key);
+        return v != null ? v : map.computeIfAbsent(key, create);
+    }
+
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder(8192);
+
+        header(out, "http_requests_total", "counter", "Finished HTTP requests by route and status");
+        REQUESTS.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<StatusKey, LongAdder> e) -> e.getKey().route())
+                        .thenComparing(e -> e.getKey().method()).thenComparing(e -> e.getKey().status()))
+                .forEach(e -> sample(out, "http_requests_total",
+                        "method", e.getKey().method(), "route", e.getKey().route(), "status", String.valueOf(e.getKey().status()),
+                        e.getValue().sum()));
+
+        header(out, "http_requests_in_flight", "gauge", "HTTP requests currently being served");
+        sample(out, "http_requests_in_flight", IN_FLIGHT.sum());
+
+        summaries(out, "http_request_duration_seconds", "Request latency by route", LATENCY);
+        summaries(out, "http_request_db_seconds", "Database time per request by route", DB_TIME);
+
+        header(out, "jwt_verify_duration_seconds", "summary", "Time to verify the bearer token (cache hits included)");
+        summary(out, "jwt_verify_duration_seconds", null, JWT_VERIFY.snapshot());
+
+        jvm(out);
+        return out.toString();
+    }
+
+    private static void summaries(StringBuilder out, String name, String help, Map<RouteKey, LatencyHistogram> histograms) {
+        header(out, name, "summary", help);
+        histograms.entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<RouteKey, LatencyHistogram> e) -> e.getKey().route())
+                        .thenComparing(e -> e.getKey().method()))
+                .forEach(e -> summary(out, name, e.getKey(), e.getValue().snapshot()));
+    }
+
+    private static void summary(StringBuilder out, String name, RouteKey key, LatencyHistogram.Snapshot s) {
+        String labels = key == null ? "" : "method=\"" + escape(key.method()) + "\",route=\"" + escape(key.route()) + "\"";
+        String sep = labels.isEmpty() ? "" : ",";
+        out.append(name).append("{").append(labels).append(sep).append("quantile=\"0.5\"} ").append(s.p50()).append('\n');
+        out.append(name).append("{").append(labels).append(sep).append("quantile=\"0.95\"} ").append(s.p95()).append('\n');
+        out.append(name).append("{").append(labels).append(sep).append("quantile=\"0.99\"} ").append(s.p99()).append('\n');
+        out.append(name).append("{").append(labels).append(sep).append("quantile=\"1\"} ").append(s.max()).append('\n');
+        String suffixLabels = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffixLabels).append(' ').append(s.sum()).append('\n');
+        out.append(name).append("_count").append(suffixLabels).append(' ').append(s.count()).append('\n');
+    }
+
+    private static void jvm(StringBuilder out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        header(out, "jvm_memory_used_bytes", "gauge", "Used JVM memory");
+        memory(out, "jvm_memory_used_bytes", memory.getHeapMemoryUsage().getUsed(), memory.getNonHeapMemoryUsage().getUsed());
+        header(out, "jvm_memory_committed_bytes", "gauge", "Committed JVM memory");
+        memory(out, "jvm_memory_committed_bytes", memory.getHeapMemoryUsage().getCommitted(), memory.getNonHeapMemoryUsage().getCommitted());
+        header(out, "jvm_memory_max_bytes", "gauge", "Max JVM memory (-1 when undefined)");
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        memory(out, "jvm_memory_max_bytes", heap.getMax(), memory.getNonHeapMemoryUsage().getMax());
+
+        header(out, "jvm_gc_collections_total", "counter", "GC runs per collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            sample(out, "jvm_gc_collections_total", "gc", gc.getName(), gc.getCollectionCount());
+        header(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in GC per collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            sample(out, "jvm_gc_collection_seconds_total", "gc", gc.getName(), gc.getCollectionTime() / 1e3);
+
+        header(out, "jvm_threads_live", "gauge", "Live platform threads");
+        sample(out, "jvm_threads_live", ManagementFactory.getThreadMXBean().getThreadCount());
+        header(out, "process_uptime_seconds", "gauge", "Time since the JVM started");
+        sample(out, "process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1e3);
+    }
+
+    private static void memory(StringBuilder out, String name, long heap, long nonHeap) {
+        sample(out, name, "area", "heap", heap);
+        sample(out, name, "area", "nonheap", nonHeap);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, Object value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String labelValue, Object value) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(labelValue)).append("\"} ").append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String l1, String v1, String l2, String v2, String l3, String v3, Object value) {
+        out.append(name).append('{')
+                .append(l1).append("=\"").append(escape(v1)).append("\",")
+                .append(l2).append("=\"").append(escape(v2)).append("\",")
+                .append(l3).append("=\"").append(escape(v3)).append("\"} ")
+                .append(value).append('\n');
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
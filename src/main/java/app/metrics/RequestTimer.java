@@ -0,0 +1,78 @@
+package app.metrics;
+
+import java.util.Locale;
+
+/*
+Per-request timing state. ApplicationConfig starts one per request and keeps it as a ctx attribute,
+and it is also bound to the request thread so code deep in the stack (the DAO helpers, the JSON mapper)
+can add to it without a Context. The fields are only written by whichever thread is currently running the request.
+Phases: auth (JWT check), db (DAO calls + commit), serialize (JSON), compute (everything else in between).
+ */
+
+public class RequestTimer {
+
+    private static final ThreadLocal<RequestTimer> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private long authNanos;
+    private long dbNanos;
+    private long serializeNanos;
+
+    public static RequestTimer start() {
+        RequestTimer timer = new RequestTimer();
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    public static RequestTimer current() {
+        return CURRENT.get();
+    }
+
+    // The add methods are no-ops outside a request
+    public static void addAuth(long nanos) {
+        RequestTimer timer = CURRENT.get();
+        if (timer != null) timer.authNanos += nanos;
+    }
+
+    public static void addDb(long nanos) {
+        RequestTimer timer = CURRENT.get();
+        if (timer != null) timer.dbNanos += nanos;
+    }
+
+    public static void addSerialize(long nanos) {
+        RequestTimer timer = CURRENT.get();
+        if (timer != null) timer.serializeNanos += nanos;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long authNanos() {
+        return authNanos;
+    }
+
+    public long dbNanos() {
+        return dbNanos;
+    }
+
+    public long serializeNanos() {
+        return serializeNanos;
+    }
+
+    // Request time not spent in any measured phase: handler logic, framework, validation
+    public long computeNanos(long totalNanos) {
+        return Math.max(0, totalNanos - authNanos - dbNanos - serializeNanos);
+    }
+
+    // Server-Timing header value, durations in ms
+    public String serverTiming(long totalNanos) {
+        return String.format(Locale.ROOT, "auth;dur=%.3f, db;dur=%.3f, compute;dur=%.3f, serialize;dur=%.3f, total;dur=%.3f",
+                authNanos / 1e6, dbNanos / 1e6, computeNanos(totalNanos) / 1e6, serializeNanos / 1e6, totalNanos / 1e6);
+    }
+
+    // Unbinds from the calling thread if it is still this request's
+    public void finish() {
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+}
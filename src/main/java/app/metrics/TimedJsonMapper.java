@@ -0,0 +1,58 @@
+package app.metrics;
+
+import io.javalin.json.JsonMapper;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.stream.Stream;
+
+// Javalin JsonMapper that adds the time spent serializing responses (ctx.json) to the request's serialize phase
+public class TimedJsonMapper implements JsonMapper {
+
+    private final JsonMapper delegate;
+
+    public TimedJsonMapper(JsonMapper delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        long start = System.nanoTime();
+        try {
+            return delegate.toJsonString(obj, type);
+        } finally {
+            RequestTimer.addSerialize(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        long start = System.nanoTime();
+        try {
+            return delegate.toJsonStream(obj, type);
+        } finally {
+            RequestTimer.addSerialize(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeToOutputStream(Stream<?> stream, OutputStream outputStream) {
+        long start = System.nanoTime();
+        try {
+            delegate.writeToOutputStream(stream, outputStream);
+        } finally {
+            RequestTimer.addSerialize(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        return delegate.fromJsonString(json, targetType);
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        return delegate.fromJsonStream(json, targetType);
+    }
+}
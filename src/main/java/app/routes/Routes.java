@@ -2,6 +2,7 @@ package app.routes;
 
 import app.controllers.AdminController;
 import app.controllers.CalculationController;
+import app.controllers.MetricsController;
 import app.controllers.PublicController;
 import app.security.controllers.AuthController;
 import app.security.enums.Role;
@@ -17,8 +18,12 @@ public class Routes {
         var calc = new CalculationController(emf);
         var pub = new PublicController(emf);
         var admin = new AdminController(emf);
+        var metrics = new MetricsController();
 
         return () -> {
+            // Prometheus scrape target; route names, traffic and JVM internals are for admins only
+            get("/metrics", metrics.prometheus(), Role.ADMIN);
+
             // Auth – (Anyone endpoints)
             path("/auth", () -> {
                 get("/healthcheck", auth.health(), Role.ANYONE);
@@ -38,6 +43,10 @@ public class Routes {
             path("/admin", () -> {
                 get("/panel", admin.panel(), Role.ADMIN);
                 get("/users", admin.users(), Role.ADMIN);
+                get("/calculations", calc.getAll(), Role.ADMIN);
+                get("/metrics", admin.metrics(), Role.ADMIN);
+                get("/pool", admin.pool(), Role.ADMIN);
+                get("/export", admin.export(), Role.ADMIN);
             });
 
             // Calc (Guest-guarded)
@@ -46,6 +55,7 @@ public class Routes {
                 post("/subtract", calc.subtract(), Role.GUEST, Role.ADMIN);
                 post("/multiply", calc.multiply(), Role.ADMIN);
                 post("/divide", calc.divide(), Role.ADMIN);
+                post("/batch", calc.batch(), Role.GUEST, Role.ADMIN);
                 get("/calculations", calc.getMine(), Role.GUEST, Role.ADMIN);
                 delete("/calculations/{id}", calc.deleteById(), Role.ADMIN);
             });
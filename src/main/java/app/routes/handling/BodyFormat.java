@@ -0,0 +1,167 @@
+package app.routes.handling;
+
+import app.dtos.CalculationDTO;
+import app.exceptions.ValidationException;
+import app.metrics.RequestTimer;
+import app.utils.Json;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/*
+The representations calculation endpoints speak besides plain JSON, picked from Accept (responses) and
+Content-Type (request bodies). CBOR and Smile are binary: doubles travel as 8 raw bytes instead of being printed
+and parsed as decimal text, which is most of the cost of a calculation payload. COMPACT_JSON stays JSON but sends
+each calculation as an array ([id, operation, num1, num2, result, timestamp, username]), dropping the repeated keys.
+Anything else (no header, wildcards, unknown types) is JSON, so existing clients see no change.
+ */
+
+public enum BodyFormat {
+    JSON("application/json", Json.MAPPER, ""),
+    COMPACT_JSON("application/vnd.calcapi.compact+json", Json.COMPACT, "-compact"),
+    CBOR("application/cbor", Json.CBOR, "-cbor"),
+    SMILE("application/x-jackson-smile", Json.SMILE, "-smile");
+
+    private final String mediaType;
+    private final ObjectMapper mapper;
+    private final String etagSuffix;
+    private final ObjectWriter calculationWriter;
+    private final ObjectWriter calculationListWriter;
+
+    BodyFormat(String mediaType, ObjectMapper mapper, String etagSuffix) {
+        this.mediaType = mediaType;
+        this.mapper = mapper;
+        this.etagSuffix = etagSuffix;
+        // no flush per value: the streaming listing writes row by row into one generator
+        this.calculationWriter = mapper.writerFor(CalculationDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.calculationListWriter = mapper.writerFor(new TypeReference<List<CalculationDTO>>() {});
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    public ObjectWriter calculationWriter() {
+        return calculationWriter;
+    }
+
+    // Appended to ETags, so a cached JSON body never validates a CBOR request and vice versa
+    public String etagSuffix() {
+        return etagSuffix;
+    }
+
+    // The supported type with the highest q in Accept; JSON when none is listed
+    public static BodyFormat forResponse(Context ctx) {
+        return fromAccept(ctx.header("Accept"));
+    }
+
+    public static BodyFormat forRequest(Context ctx) {
+        String contentType = ctx.header("Content-Type");
+        if (contentType == null) return JSON;
+        BodyFormat format = byMediaType(contentType.split(";")[0].trim());
+        return format != null ? format : JSON;
+    }
+
+    static BodyFormat fromAccept(String accept) {
+        if (accept == null) return JSON;
+        BodyFormat best = JSON;
+        double bestQ = -1;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String type = params[0].trim();
+            BodyFormat format = type.equals("*/*") || type.equals("application/*") ? JSON : byMediaType(type);
+            if (format == null) continue;
+            double q = quality(params);
+            if (q > bestQ) {
+                best = format;
+                bestQ = q;
+            }
+        }
+        return bestQ > 0 ? best : JSON;
+    }
+
+    private static BodyFormat byMediaType(String type) {
+        for (BodyFormat f : values()) {
+            if (f.mediaType.equalsIgnoreCase(type)) return f;
+        }
+        return null;
+    }
+
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String p = params[i].trim().replace(" ", "");
+            if (p.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // JSON goes through bodyAsClass as before; the other formats are read with their own mapper.
+    // A body that does not parse (or does not fit the type) is the client's mistake: 400, not 500
+    public <T> T read(Context ctx, Class<T> type) throws ValidationException {
+        try {
+            if (this == JSON) return ctx.bodyAsClass(type);
+            return mapper.readValue(ctx.bodyInputStream(), type);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Invalid request body");
+        } catch (UncheckedIOException e) {
+            // AppJsonMapper (behind bodyAsClass) wraps the parse error
+            if (e.getCause() instanceof JsonProcessingException) throw new ValidationException("Invalid request body");
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(Context ctx, CalculationDTO dto) {
+        write(ctx, calculationWriter, dto);
+    }
+
+    public void writeList(Context ctx, List<CalculationDTO> dtos) {
+        write(ctx, calculationListWriter, dtos);
+    }
+
+    // Anything else (e.g. batch results); calculations inside it get this format's shape too
+    public void writeValue(Context ctx, Object value) {
+        write(ctx, mapper.writer(), value);
+    }
+
+    public byte[] listBytes(List<CalculationDTO> dtos) {
+        try {
+            return calculationListWriter.writeValueAsBytes(dtos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(Context ctx, ObjectWriter writer, Object value) {
+        if (this == JSON) {
+            ctx.json(value);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            ctx.contentType(mediaType).result(writer.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            RequestTimer.addSerialize(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package app.routes.handling;
+
+import io.javalin.http.Context;
+
+/*
+Conditional GET for responses whose ETag is known before the body is built (e.g. from a data version).
+The comparison is the weak one from RFC 9110: W/"x" and "x" match, as GET revalidation requires.
+ */
+
+public final class ETags {
+    private ETags() {}
+
+    public static String weak(String value) {
+        return "W/\"" + value + "\"";
+    }
+
+    // Sets the ETag (and makes caches revalidate); true when the client's copy is current and a 304 was set
+    public static boolean notModified(Context ctx, String etag) {
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", "no-cache");
+        ctx.header("Vary", "Accept, Authorization");
+        if (!matches(ctx.header("If-None-Match"), etag)) return false;
+        ctx.status(304);
+        return true;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String wanted = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || opaque(c).equals(wanted)) return true;
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -5,6 +5,7 @@ import io.javalin.apibuilder.ApiBuilder;
 import io.javalin.apibuilder.EndpointGroup;
 import io.javalin.http.Handler;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
@@ -37,6 +38,27 @@ public final class RouteDocs {
         ROUTES.add(new RouteEntry(method, fullPath(path), names));
     }
 
+    // Lets handlers that multiplex several operations (e.g. /calc/batch) reuse the roles registered for the single routes
+    public static boolean allows(String method, String path, Role role) {
+        for (RouteEntry r : ROUTES) {
+            if (!r.method().equals(method) || !r.path().equals(path)) continue;
+            if (r.roles().isEmpty() || r.roles().contains(Role.ANYONE.name())) return true;
+            return role != null && r.roles().contains(role.name());
+        }
+        return false;
+    }
+
+    // Metric label for a matched endpoint path (without context path): the registered template, e.g. "/calc/calculations/{id}".
+    // Anything not in the registry (404s, unregistered pages) collapses into one label so the series count stays bounded.
+    public static String routeLabel(String method, String endpointPath) {
+        if (endpointPath != null) {
+            for (RouteEntry r : ROUTES) {
+                if (r.method().equals(method) && r.path().equals(endpointPath)) return r.path();
+            }
+        }
+        return "unmatched";
+    }
+
     // --- role enforcement via RoleGuard ---
     private static Handler guarded(Handler h, Role... roles) {
         if (roles == null || roles.length == 0) return h;      // no restriction
@@ -73,8 +95,11 @@ public final class RouteDocs {
     }
 
     // ---- Pretty Overview Page (/api/routes) ----
-    public static Handler overviewHtml = ctx -> {
-        final String ctxBase = Optional.ofNullable(ctx.contextPath()).orElse(""); // "/api"
+    // Rendered once and served pre-compressed; re-rendered only if more routes get registered
+    public static Handler overviewHtml = StaticResponse.of("text/html; charset=utf-8", ROUTES::size,
+            ctx -> renderOverview(Optional.ofNullable(ctx.contextPath()).orElse("")).getBytes(StandardCharsets.UTF_8));
+
+    public static String renderOverview(String ctxBase) { // ctxBase: "/api"
 
 
         // Sort by path, then by method
@@ -263,8 +288,8 @@ public final class RouteDocs {
 
         html.append(tail.replace("__COUNT__", String.valueOf(routes.size())));
 
-        ctx.contentType("text/html; charset=utf-8").result(html.toString());
-    };
+        return html.toString();
+    }
 
     private static String esc(String s) {
         if (s == null) return "";
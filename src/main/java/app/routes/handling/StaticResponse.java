@@ -0,0 +1,196 @@
+package app.routes.handling;
+
+import app.utils.Json;
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/*
+A response that is rendered once (or at most once per refresh interval) and then served as bytes.
+Each rendering is kept as identity, gzip and (when the native brotli library loads) brotli, with a strong ETag
+per encoding, so a hit is a header check and one write: 304 when the client's copy is current, otherwise the
+pre-compressed body. The body goes straight to the servlet stream, past Javalin's on-the-fly compression.
+ */
+
+public final class StaticResponse implements Handler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResponse.class);
+    private static final boolean BROTLI = brotliAvailable();
+
+    record Rendered(byte[] identity, byte[] gzip, byte[] brotli, String tag, long version, long renderedAt) {}
+
+    private final String contentType;
+    private final Function<Context, byte[]> render;
+    private final long refreshNanos;
+    private final LongSupplier version;
+    private volatile Rendered current;
+    private final AtomicBoolean rerendering = new AtomicBoolean();
+
+    private StaticResponse(String contentType, Function<Context, byte[]> render, long refreshNanos, LongSupplier version) {
+        this.contentType = contentType;
+        this.render = render;
+        this.refreshNanos = refreshNanos;
+        this.version = version;
+    }
+
+    // Rendered on the first request and again whenever version changes (e.g. the number of registered routes)
+    public static StaticResponse of(String contentType, LongSupplier version, Function<Context, byte[]> render) {
+        return new StaticResponse(contentType, render, 0, version);
+    }
+
+    // JSON that never changes while the server runs
+    public static StaticResponse json(Supplier<Object> value) {
+        return new StaticResponse("application/json", ctx -> toJson(value.get()), 0, () -> 0);
+    }
+
+    // JSON that may change, re-rendered at most once per refresh interval
+    public static StaticResponse json(Duration refresh, Supplier<Object> value) {
+        return new StaticResponse("application/json", ctx -> toJson(value.get()), refresh.toNanos(), () -> 0);
+    }
+
+    @Override
+    public void handle(Context ctx) throws IOException {
+        Rendered r = rendered(ctx);
+        ctx.header("Vary", "Accept-Encoding");
+        ctx.header("Cache-Control", "no-cache");
+
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        String encoding = r.brotli() != null && accepts(acceptEncoding, "br") ? "br"
+                : accepts(acceptEncoding, "gzip") ? "gzip" : null;
+        String etag = encoding == null ? "\"" + r.tag() + "\"" : "\"" + r.tag() + "-" + encoding + "\"";
+        ctx.header("ETag", etag);
+
+        // the tag of this encoding only: a gzip ETag must not validate an identity copy or the other way round
+        if (ETags.matches(ctx.header("If-None-Match"), etag)) {
+            ctx.status(304);
+            return;
+        }
+
+        byte[] body = encoding == null ? r.identity() : encoding.equals("br") ? r.brotli() : r.gzip();
+        ctx.contentType(contentType);
+        if (encoding != null) ctx.header("Content-Encoding", encoding);
+        HttpServletResponse res = ctx.res();
+        res.setContentLength(body.length);
+        res.getOutputStream().write(body);
+    }
+
+    Rendered rendered(Context ctx) {
+        Rendered r = current;
+        long v = version.getAsLong();
+        if (r != null && isFresh(r, v)) return r;
+        if (r == null) {
+            // nothing to serve yet, so the first requests wait for one rendering
+            synchronized (this) {
+                r = current;
+                if (r == null) current = r = render(ctx, v);
+                return r;
+            }
+        }
+        // one request re-renders (brotli at quality 11 is not cheap); the others keep serving the previous bytes
+        if (!rerendering.compareAndSet(false, true)) return r;
+        try {
+            r = current;
+            if (isFresh(r, v)) return r;
+            r = render(ctx, v);
+            current = r;
+            return r;
+        } finally {
+            rerendering.set(false);
+        }
+    }
+
+    private boolean isFresh(Rendered r, long v) {
+        return r.version() == v && (refreshNanos == 0 || System.nanoTime() - r.renderedAt() < refreshNanos);
+    }
+
+    private Rendered render(Context ctx, long v) {
+        byte[] identity = render.apply(ctx);
+        return new Rendered(identity, gzip(identity), BROTLI ? brotli(identity) : null, tag(identity), v, System.nanoTime());
+    }
+
+    // true when the Accept-Encoding header lists the coding (or *) without q=0
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim();
+            if (!name.equalsIgnoreCase(coding) && !name.equals("*")) continue;
+            for (int i = 1; i < params.length; i++) {
+                String p = params[i].trim().replace(" ", "");
+                if (p.startsWith("q=")) {
+                    try {
+                        if (Double.parseDouble(p.substring(2)) == 0) return false;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] toJson(Object value) {
+        try {
+            return Json.MAPPER.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Rendering happens rarely, so brotli can use its best (slowest) quality
+    private static byte[] brotli(byte[] data) {
+        try {
+            return Encoder.compress(data, new Encoder.Parameters().setQuality(11));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String tag(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // brotli4j ships native code per platform; without it the responses are served gzip/identity only
+    private static boolean brotliAvailable() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (Throwable t) {
+            logger.info("Brotli not available ({}), static responses are pre-compressed with gzip only", t.toString());
+            return false;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import app.entities.User;
 import app.security.enums.Role;
 import app.security.utils.JwtUtil;
 import app.services.UserService;
+import com.nimbusds.jose.JOSEException;
 import io.javalin.http.Handler;
 import jakarta.persistence.EntityManagerFactory;
 
@@ -42,12 +43,12 @@ public class AuthController {
                 role = Role.GUEST;
             }
 
-            User user = userService.registerUser(username, password, role);
-            ctx.json(Map.of(
+            var registered = userService.registerUserAsync(username, password, role);
+            ctx.future(() -> registered.thenAccept(user -> ctx.json(Map.of(
                     "message", "User registered",
                     "username", user.getUsername(),
                     "role", user.getRole().name()
-            ));
+            ))));
         };
     }
 
@@ -63,20 +64,22 @@ public class AuthController {
                 return;
             }
 
-            boolean valid = userService.validateUser(username, password);
-            if (!valid) {
-                ctx.status(401).json(Map.of("error", "Invalid username or password"));
-                return;
-            }
-
-            User user = userService.findByUsername(username);
-            String token = JwtUtil.generateToken(user);
-
-            ctx.json(Map.of(
-                    "token", token,
-                    "username", username,
-                    "role", user.getRole().name()
-            ));
+            var authenticated = userService.authenticate(username, password);
+            ctx.future(() -> authenticated.thenAccept(user -> {
+                if (user == null) {
+                    ctx.status(401).json(Map.of("error", "Invalid username or password"));
+                    return;
+                }
+                try {
+                    ctx.json(Map.of(
+                            "token", JwtUtil.generateToken(user),
+                            "username", username,
+                            "role", user.getRole().name()
+                    ));
+                } catch (JOSEException e) {
+                    throw new IllegalStateException("Could not sign token", e);
+                }
+            }));
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package app.security.utils;
+
+import app.security.enums.Role;
+
+// The verified claims of a JWT; userId is null for tokens issued before the uid claim existed
+public record JwtPrincipal(String username, Role role, Integer userId, long expiresAtMillis) {}
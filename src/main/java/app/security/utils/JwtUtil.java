@@ -10,8 +10,15 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class JwtUtil {
 
@@ -19,6 +26,22 @@ public class JwtUtil {
     private static byte[] SECRET_BYTES;
     private static String ISSUER;
     private static long EXPIRE_MS;
+    // MACSigner/MACVerifier are thread-safe, no need to build them per token
+    private static MACSigner SIGNER;
+    private static MACVerifier VERIFIER;
+
+    // Verified tokens keyed by SHA-256 of the token, so a repeat request skips parsing and HMAC checks until expiry
+    private static final int CACHE_MAX_ENTRIES = 10_000;
+    private static final Map<String, JwtPrincipal> VERIFIED = new ConcurrentHashMap<>();
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     private static void loadOnce() {
         if (loaded) return;
@@ -59,6 +82,13 @@ public class JwtUtil {
             if (ttlMs < 1000L) ttlMs = 3600000L; // sanity
             EXPIRE_MS = ttlMs;
 
+            try {
+                SIGNER = new MACSigner(SECRET_BYTES);
+                VERIFIER = new MACVerifier(SECRET_BYTES);
+            } catch (JOSEException e) {
+                throw new IllegalStateException("Invalid JWT secret", e);
+            }
+
             loaded = true;
         }
     }
@@ -71,20 +101,94 @@ public class JwtUtil {
                 .issuer(ISSUER)
                 .subject(user.getUsername())
                 .claim("role", user.getRole().name())
+                .claim("uid", user.getId())
                 .issueTime(Date.from(now))
                 .expirationTime(Date.from(now.plusMillis(EXPIRE_MS)))
                 .build();
 
         SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
-        jwt.sign(new MACSigner(SECRET_BYTES));
+        jwt.sign(SIGNER);
         return jwt.serialize();
     }
 
+    // Checks signature, expiry and issuer and returns the claims in one go; null when the token is not valid.
+    // Valid tokens are cached until they expire, invalid ones are never cached.
+    public static JwtPrincipal verify(String token) {
+        if (token == null || token.isEmpty()) return null;
+        loadOnce();
+        long now = System.currentTimeMillis();
+        String key = cacheKey(token);
+
+        JwtPrincipal cached = VERIFIED.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                CACHE_HITS.increment();
+                return cached;
+            }
+            VERIFIED.remove(key, cached);
+        }
+        CACHE_MISSES.increment();
+
+        JwtPrincipal principal = parseAndVerify(token, now);
+        if (principal != null) {
+            if (VERIFIED.size() >= CACHE_MAX_ENTRIES) evict(now);
+            VERIFIED.put(key, principal);
+        }
+        return principal;
+    }
+
+    private static JwtPrincipal parseAndVerify(String token, long now) {
+        try {
+            SignedJWT jwt = SignedJWT.parse(token);
+            if (!jwt.verify(VERIFIER)) return null;
+
+            JWTClaimsSet claims = jwt.getJWTClaimsSet();
+            Date exp = claims.getExpirationTime();
+            if (exp == null || exp.getTime() <= now) return null;
+            if (claims.getIssuer() != null && !claims.getIssuer().equals(ISSUER)) return null;
+
+            Role role;
+            try {
+                role = Role.valueOf((String) claims.getClaim("role"));
+            } catch (Exception e) {
+                role = Role.ANYONE;
+            }
+            Object uid = claims.getClaim("uid");
+            return new JwtPrincipal(claims.getSubject(), role, uid instanceof Number n ? n.intValue() : null, exp.getTime());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String cacheKey(String token) {
+        MessageDigest digest = SHA256.get();
+        return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    // Drop expired entries first; if that is not enough, drop arbitrary ones down to 90% of the cap
+    private static void evict(long now) {
+        VERIFIED.values().removeIf(p -> p.expiresAtMillis() <= now);
+        var it = VERIFIED.keySet().iterator();
+        while (VERIFIED.size() > CACHE_MAX_ENTRIES * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public static Map<String, Object> cacheMetrics() {
+        var m = new LinkedHashMap<String, Object>();
+        m.put("size", VERIFIED.size());
+        m.put("maxSize", CACHE_MAX_ENTRIES);
+        m.put("hits", CACHE_HITS.sum());
+        m.put("misses", CACHE_MISSES.sum());
+        return m;
+    }
+
     public static boolean validateToken(String token) {
         try {
             loadOnce();
             SignedJWT jwt = SignedJWT.parse(token);
-            if (!jwt.verify(new MACVerifier(SECRET_BYTES))) return false;
+            if (!jwt.verify(VERIFIER)) return false;
 
             Date exp = jwt.getJWTClaimsSet().getExpirationTime();
             if (exp == null || exp.before(new Date())) return false;
@@ -104,6 +208,16 @@ public class JwtUtil {
         }
     }
 
+    // null for tokens issued before the uid claim existed
+    public static Integer getUserId(String token) {
+        try {
+            Object uid = SignedJWT.parse(token).getJWTClaimsSet().getClaim("uid");
+            return uid instanceof Number n ? n.intValue() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public static Role getRole(String token) {
         try {
             String role = (String) SignedJWT.parse(token).getJWTClaimsSet().getClaim("role");
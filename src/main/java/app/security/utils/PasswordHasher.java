@@ -0,0 +1,122 @@
+package app.security.utils;
+
+import app.exceptions.ApiException;
+import app.utils.Utils;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+BCrypt runs here instead of on the Jetty request threads, so a burst of logins cannot use up the threads
+that serve the cheap endpoints. The pool and its queue are both bounded: when the queue is full the call
+fails straight away with a 503 instead of piling up more waiting requests.
+ */
+
+public class PasswordHasher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+    private static volatile PasswordHasher shared;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueCapacity;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public PasswordHasher(int threads, int queueCapacity) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "bcrypt-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // One pool for the whole app; sized by PASSWORD_HASH_THREADS / PASSWORD_HASH_QUEUE
+    public static PasswordHasher shared() {
+        PasswordHasher h = shared;
+        if (h == null) {
+            synchronized (PasswordHasher.class) {
+                h = shared;
+                if (h == null) {
+                    int threads = Utils.getConfigInt("PASSWORD_HASH_THREADS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                    int queue = Utils.getConfigInt("PASSWORD_HASH_QUEUE", 64);
+                    h = new PasswordHasher(threads, queue);
+                    shared = h;
+                    logger.info("Password hashing pool started ({} threads, queue {})", threads, queue);
+                }
+            }
+        }
+        return h;
+    }
+
+    public CompletableFuture<String> hash(String password) throws ApiException {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt()));
+    }
+
+    public CompletableFuture<Boolean> check(String password, String hashed) throws ApiException {
+        return submit(() -> BCrypt.checkpw(password, hashed));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) throws ApiException {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                record(queueWaitNanos, maxQueueWaitNanos, started - queuedAt);
+                try {
+                    return work.get();
+                } finally {
+                    record(hashNanos, maxHashNanos, System.nanoTime() - started);
+                    completed.increment();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ApiException(503, "Too many login requests, try again shortly");
+        }
+    }
+
+    private static void record(LongAdder total, LongAccumulator max, long nanos) {
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public Map<String, Object> metrics() {
+        long done = completed.sum();
+        var m = new LinkedHashMap<String, Object>();
+        m.put("threads", threads);
+        m.put("active", executor.getActiveCount());
+        m.put("queueDepth", executor.getQueue().size());
+        m.put("queueCapacity", queueCapacity);
+        m.put("completed", done);
+        m.put("rejected", rejected.sum());
+        m.put("avgHashMs", done == 0 ? 0.0 : hashNanos.sum() / 1e6 / done);
+        m.put("maxHashMs", maxHashNanos.get() / 1e6);
+        m.put("avgQueueWaitMs", done == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / done);
+        m.put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1e6);
+        return m;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
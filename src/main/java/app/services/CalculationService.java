@@ -1,15 +1,22 @@
 package app.services;
 
 import app.daos.CalculationDAO;
+import app.daos.CalculationWriteBehind;
+import app.dtos.CalculationDTO;
+import app.dtos.ExportFilter;
+import app.dtos.PageCursor;
 import app.entities.Calculation;
 import app.entities.User;
+import app.entities.enums.Operation;
 import app.exceptions.ApiException;
 import app.exceptions.ValidationException;
-import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class CalculationService {
 
@@ -40,6 +47,25 @@ public class CalculationService {
         return save(user, num1, num2, num1 / num2, "DIVIDE");
     }
 
+    // Computes the result without persisting it, so callers can save many at once through saveAll
+    public Calculation evaluate(User user, Operation op, double num1, double num2) throws ValidationException {
+        return switch (op) {
+            case ADD -> build(user, num1, num2, num1 + num2, op.name());
+            case SUBTRACT -> build(user, num1, num2, num1 - num2, op.name());
+            case MULTIPLY -> build(user, num1, num2, num1 * num2, op.name());
+            case DIVIDE -> {
+                if (num2 == 0) {
+                    throw new ValidationException("Cannot divide by zero");
+                }
+                yield build(user, num1, num2, num1 / num2, op.name());
+            }
+        };
+    }
+
+    public List<Calculation> saveAll(List<Calculation> calculations) {
+        return calcDAO.createAll(calculations);
+    }
+
     public Calculation findById(int id) {
         return calcDAO.findById(id);
     }
@@ -48,33 +74,60 @@ public class CalculationService {
         return calcDAO.findAllByUser(user);
     }
 
+    public List<CalculationDTO> findPage(Integer userId, PageCursor after, int limit) {
+        return calcDAO.findPage(userId, after, limit);
+    }
+
+    public void streamAll(Integer userId, Consumer<CalculationDTO> sink) {
+        calcDAO.streamAll(userId, sink);
+    }
+
+    public long exportCsv(ExportFilter filter, OutputStream out) {
+        return calcDAO.exportCsv(filter, out);
+    }
+
+    public long dataVersion(Integer userId) {
+        return calcDAO.dataVersion(userId);
+    }
+
+    public Map<String, Long> countByOperation() {
+        return calcDAO.countByOperation();
+    }
+
+    public CalculationDTO findLatest() {
+        return calcDAO.findLatest();
+    }
 
     public List<Calculation> getAll() {
         return calcDAO.getAll();
     }
 
     public void deleteById(int id) throws ApiException {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-
-            Calculation c = em.find(Calculation.class, id);
-            if (c == null) {
-                em.getTransaction().rollback();
-                throw new ApiException(404, "Calculation not found");
-            }
-
-            em.remove(c);
-            em.getTransaction().commit();
-        } catch (RuntimeException | ApiException e) {
-            if (em.getTransaction().isActive()) em.getTransaction().rollback();
-            throw e;
-        } finally {
-            em.close();
-        }
+        if (!calcDAO.deleteIfExists(id)) throw new ApiException(404, "Calculation not found");
     }
 
+    // With write-behind enabled the row is queued and inserted later, so the returned calculation has no id yet.
+    // The writer thread gets its own copy: it swaps in a User reference and assigns the id while the caller may
+    // still be reading the one returned here.
     private Calculation save(User user, double n1, double n2, double result, String operation) {
+        Calculation c = build(user, n1, n2, result, operation);
+        CalculationWriteBehind writer = CalculationWriteBehind.get(emf);
+        if (writer != null && writer.submit(copyOf(c))) return c;
+        return calcDAO.create(c);
+    }
+
+    private static Calculation copyOf(Calculation c) {
+        Calculation copy = new Calculation();
+        copy.setUser(c.getUser());
+        copy.setNum1(c.getNum1());
+        copy.setNum2(c.getNum2());
+        copy.setResult(c.getResult());
+        copy.setOperation(c.getOperation());
+        copy.setTimestamp(c.getTimestamp());
+        return copy;
+    }
+
+    private Calculation build(User user, double n1, double n2, double result, String operation) {
         Calculation c = new Calculation();
         c.setUser(user);
         c.setNum1(n1);
@@ -82,6 +135,6 @@ public class CalculationService {
         c.setResult(result);
         c.setOperation(operation);
         c.setTimestamp(LocalDateTime.now());
-        return calcDAO.create(c);
+        return c;
     }
 }
\ No newline at end of file
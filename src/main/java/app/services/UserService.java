@@ -1,19 +1,41 @@
 package app.services;
 
+import app.daos.UnitOfWork;
 import app.daos.UserDAO;
 import app.entities.User;
+import app.exceptions.ApiException;
 import app.security.enums.Role;
+import app.security.utils.PasswordHasher;
 import jakarta.persistence.EntityManagerFactory;
 import org.mindrot.jbcrypt.BCrypt;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class UserService {
 
+    // The insert after hashing runs here, not on the hashing pool: that pool is small and CPU-sized, and a slow
+    // database or connection checkout must not hold its threads (or fill its queue and turn logins into 503s)
+    private static final AtomicInteger dbThreads = new AtomicInteger();
+    private static final ExecutorService DB_WORK = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "user-db-" + dbThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
     private final UserDAO userDAO;
+    private final PasswordHasher hasher;
 
     public UserService(EntityManagerFactory emf) {
+        this(emf, PasswordHasher.shared());
+    }
+
+    public UserService(EntityManagerFactory emf, PasswordHasher hasher) {
         this.userDAO = new UserDAO(emf);
+        this.hasher = hasher;
     }
 
     // Register new user and hashes password after that give user GUEST role.
@@ -37,6 +59,30 @@ public class UserService {
         return BCrypt.checkpw(password, found.getPassword());
     }
 
+    // Same as registerUser, but the hashing runs on the password hashing pool; throws a 503 ApiException if it is full
+    public CompletableFuture<User> registerUserAsync(String username, String password, Role role) throws ApiException {
+        if (userDAO.findByUsername(username) != null) {
+            throw new IllegalArgumentException("Username already exists");
+        }
+        // nothing is held while the password waits for the hashing pool; the insert gets a unit of work of its own
+        UnitOfWork.endCurrent();
+        return hasher.hash(password).thenApplyAsync(hashedPassword -> {
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword(hashedPassword);
+            user.setRole(role != null ? role : Role.GUEST);
+            return UnitOfWork.runInNew(() -> userDAO.create(user));
+        }, DB_WORK);
+    }
+
+    // Looks the user up once and checks the password on the hashing pool; completes with null if the login is wrong
+    public CompletableFuture<User> authenticate(String username, String password) throws ApiException {
+        User found = userDAO.findByUsername(username);
+        UnitOfWork.endCurrent();
+        if (found == null) return CompletableFuture.completedFuture(null);
+        return hasher.check(password, found.getPassword()).thenApply(ok -> ok ? found : null);
+    }
+
 
     //Find user by username
     public User findByUsername(String username) {
@@ -0,0 +1,81 @@
+package app.utils;
+
+import app.dtos.BatchItemRequest;
+import app.dtos.CalculationDTO;
+import app.dtos.CalculationRequest;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+The one ObjectMapper of the app: Javalin's ctx.json/bodyAsClass (through AppJsonMapper), error messages and the
+streaming listing all use it, so serializers are built and cached once instead of per mapper (or per call).
+Blackbird replaces reflection in (de)serializers with generated lambdas; the fast double writer/parser replace
+Double.toString/parseDouble, which dominate calculation payloads.
+CBOR, SMILE and COMPACT are the same setup for the other formats BodyFormat negotiates; COMPACT is JSON with
+calculations (and calculation and batch requests) written as arrays in a fixed field order instead of objects.
+Configure them here only: a mapper is shared state, so nobody else may change its settings.
+ */
+
+public final class Json {
+    private Json() {}
+
+    public static final ObjectMapper MAPPER = configure(JsonMapper.builder());
+
+    public static final ObjectMapper COMPACT = configure(JsonMapper.builder()
+            .addMixIn(CalculationDTO.class, CompactCalculation.class)
+            .addMixIn(CalculationRequest.class, CompactCalculationRequest.class)
+            .addMixIn(BatchItemRequest.class, CompactBatchItemRequest.class));
+
+    public static final ObjectMapper CBOR = configure(CBORMapper.builder());
+
+    public static final ObjectMapper SMILE = configure(SmileMapper.builder());
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "operation", "num1", "num2", "result", "timestamp", "username"})
+    private abstract static class CompactCalculation {}
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"num1", "num2"})
+    private abstract static class CompactCalculationRequest {}
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"op", "num1", "num2"})
+    private abstract static class CompactBatchItemRequest {}
+
+    private static <M extends ObjectMapper, B extends MapperBuilder<M, B>> M configure(B builder) {
+        return builder
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+                .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+                .addModule(new JavaTimeModule())
+                .addModule(new BlackbirdModule())
+                .build();
+    }
+
+    // Writers resolve their root serializer once, which saves a lookup per response
+    public static final ObjectWriter CALCULATION_WRITER = MAPPER.writerFor(CalculationDTO.class);
+    public static final ObjectWriter CALCULATION_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<CalculationDTO>>() {});
+    public static final ObjectWriter MESSAGE_WRITER = MAPPER.writerFor(new TypeReference<Map<String, String>>() {});
+
+    // The pre-built writer for the common response types, a generic one for everything else
+    public static ObjectWriter writerFor(Object value) {
+        if (value instanceof CalculationDTO) return CALCULATION_WRITER;
+        if (value instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof CalculationDTO) return CALCULATION_LIST_WRITER;
+        return MAPPER.writer();
+    }
+}
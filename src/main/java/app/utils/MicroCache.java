@@ -0,0 +1,165 @@
+package app.utils;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+Short-lived cache for responses that are the same for every caller (e.g. /public/stats).
+- fresh (younger than ttl): served from memory
+- stale (up to staleWhileRevalidate past ttl): served from memory while one background load refreshes it
+- missing or older: loaded; concurrent callers for the same key wait for that one load instead of running their own
+- a failed load (e.g. Postgres briefly down) falls back to the last value if it is younger than ttl + staleIfError
+- invalidated (the data behind it changed): loaded on the next get, but still kept as the stale-if-error fallback
+Loads run on a separate pool, outside the caller's UnitOfWork, so a failing query never poisons the request's
+transaction and a waiter that gives up does not cancel the load for the others.
+ */
+
+public final class MicroCache<K, V> {
+
+    private static final Map<String, MicroCache<?, ?>> CACHES = new ConcurrentHashMap<>();
+    private static final AtomicInteger loaderThreads = new AtomicInteger();
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "micro-cache-loader-" + loaderThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Entry<V>(V value, long loadedAt, boolean invalidated) {}
+
+    private final String name;
+    private final long ttlNanos;
+    private final long staleWhileRevalidateNanos;
+    private final long staleIfErrorNanos;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder staleOnError = new LongAdder();
+    private final LongAdder loadErrors = new LongAdder();
+
+    public MicroCache(String name, Duration ttl, Duration staleWhileRevalidate, Duration staleIfError) {
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.staleWhileRevalidateNanos = staleWhileRevalidate.toNanos();
+        this.staleIfErrorNanos = staleIfError.toNanos();
+        CACHES.put(name, this);
+    }
+
+    // Settings from MICRO_CACHE_TTL_MS, MICRO_CACHE_SWR_MS and MICRO_CACHE_STALE_IF_ERROR_MS
+    public static <K, V> MicroCache<K, V> fromConfig(String name) {
+        return new MicroCache<>(name,
+                Duration.ofMillis(Utils.getConfigLong("MICRO_CACHE_TTL_MS", 1_000)),
+                Duration.ofMillis(Utils.getConfigLong("MICRO_CACHE_SWR_MS", 10_000)),
+                Duration.ofMillis(Utils.getConfigLong("MICRO_CACHE_STALE_IF_ERROR_MS", 300_000)));
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.invalidated()) {
+            long age = System.nanoTime() - entry.loadedAt();
+            if (age < ttlNanos) {
+                hits.increment();
+                return entry.value();
+            }
+            if (age < ttlNanos + staleWhileRevalidateNanos) {
+                staleServed.increment();
+                load(key, loader);
+                return entry.value();
+            }
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = loading.putIfAbsent(key, mine);
+        if (running == null) {
+            misses.increment();
+            start(key, loader, mine);
+            running = mine;
+        } else {
+            coalesced.increment();
+        }
+
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Entry<V> last = entries.get(key);
+            if (last != null && System.nanoTime() - last.loadedAt() < ttlNanos + staleIfErrorNanos) {
+                staleOnError.increment();
+                return last.value();
+            }
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        }
+    }
+
+    // Background refresh; joins a load that is already running for the key
+    private void load(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, mine) == null) start(key, loader, mine);
+    }
+
+    private void start(K key, Supplier<V> loader, CompletableFuture<V> result) {
+        LOADER.execute(() -> {
+            try {
+                long startedIn = generation.get();
+                V value = loader.get();
+                Entry<V> entry = new Entry<>(value, System.nanoTime(), false);
+                entries.put(key, entry);
+                // an invalidation during the load may mean it read the old data: keep it as a fallback only
+                if (generation.get() != startedIn) entries.replace(key, entry, new Entry<>(value, entry.loadedAt(), true));
+                result.complete(value);
+            } catch (Throwable t) {
+                loadErrors.increment();
+                result.completeExceptionally(t);
+            } finally {
+                loading.remove(key, result);
+            }
+        });
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.replaceAll((key, e) -> e.invalidated() ? e : new Entry<>(e.value(), e.loadedAt(), true));
+    }
+
+    // Called after this process committed a change to the data behind the caches; other instances catch up within the ttl
+    public static void invalidateAll() {
+        CACHES.values().forEach(MicroCache::invalidate);
+    }
+
+    public Map<String, Object> metrics() {
+        var m = new LinkedHashMap<String, Object>();
+        m.put("entries", entries.size());
+        m.put("hits", hits.sum());
+        m.put("misses", misses.sum());
+        m.put("coalesced", coalesced.sum());
+        m.put("staleServed", staleServed.sum());
+        m.put("staleOnError", staleOnError.sum());
+        m.put("loadErrors", loadErrors.sum());
+        return m;
+    }
+
+    public static Map<String, Object> allMetrics() {
+        var m = new TreeMap<String, Object>();
+        CACHES.forEach((name, cache) -> m.put(name, cache.metrics()));
+        return m;
+    }
+}
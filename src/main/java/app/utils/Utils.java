@@ -1,9 +1,6 @@
 package app.utils;
 
-import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import app.exceptions.ApiException;
 import io.javalin.http.Context;
 
@@ -36,21 +33,48 @@ public class Utils {
         }
     }
 
+    // Environment variables win (deployed), then config.properties (dev), then the given default
+    public static String getConfigValue(String name, String defaultValue) {
+        String env = System.getenv(name);
+        if (env != null && !env.isBlank()) return env.trim();
+        try {
+            return getPropertyValue(name, "config.properties");
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    public static int getConfigInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(getConfigValue(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static long getConfigLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(getConfigValue(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getConfigBoolean(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(getConfigValue(name, String.valueOf(defaultValue)));
+    }
+
+    // The shared mapper (see Json); do not reconfigure it, derive an ObjectWriter/ObjectReader instead
     public ObjectMapper getObjectMapper() {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Ignore unknown properties in JSON
-        objectMapper.registerModule(new JavaTimeModule()); // Serialize and deserialize java.time objects
-        objectMapper.writer(new DefaultPrettyPrinter());
-        return objectMapper;
+        return Json.MAPPER;
     }
 
     public static String convertToJsonMessage(Context ctx, String property, String message) {
         Map<String, String> msgMap = new HashMap<>();
         msgMap.put(property, message);  // Put the message in the map
         msgMap.put("status", String.valueOf(ctx.status()));  // Put the status in the map
-        ObjectMapper objectMapper = new ObjectMapper();
         try {
-            return objectMapper.writeValueAsString(msgMap);  // Convert the map to JSON
+            return Json.MESSAGE_WRITER.writeValueAsString(msgMap);  // Convert the map to JSON
         } catch (Exception e) {
             return "{\"error\": \"Could not convert  message to JSON\"}";
         }
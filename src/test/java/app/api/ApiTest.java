@@ -1,14 +1,20 @@
 package app.api;
 
 import app.config.ApplicationConfig;
+import app.dtos.CalculationDTO;
+import app.utils.Json;
 import io.javalin.Javalin;
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
 import org.junit.jupiter.api.*;
 import app.config.HibernateConfig;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import static io.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
@@ -477,4 +483,362 @@ public class ApiTest {
                 .then()
                 .statusCode(401);
     }
+
+    @Test @Order(16)
+    void batch_reports_per_item_results_in_order() {
+        List<Map<String, Object>> items = List.of(
+                Map.of("op", "add", "num1", 1, "num2", 2),
+                Map.of("op", "multiply", "num1", 3, "num2", 4),
+                Map.of("op", "pow", "num1", 2, "num2", 8),
+                Map.of("op", "subtract", "num1", 9, "num2", 4)
+        );
+
+        // guest: multiply is admin-only, pow is unknown, the rest is saved
+        given()
+                .header("Authorization", "Bearer " + guestToken)
+                .contentType("application/json")
+                .body(items)
+                .when()
+                .post("/calc/batch")
+                .then()
+                .statusCode(200)
+                .body("size()", is(4))
+                .body("[0].status", is(200))
+                .body("[0].calculation.result", is(3.0f))
+                .body("[0].calculation.username", equalTo(guestUser))
+                .body("[1].status", is(403))
+                .body("[2].status", is(400))
+                .body("[3].status", is(200))
+                .body("[3].calculation.result", is(5.0f));
+
+        // admin: divide by zero fails alone, the other items are still saved
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body(List.of(
+                        Map.of("op", "divide", "num1", 1, "num2", 0),
+                        Map.of("op", "multiply", "num1", 3, "num2", 4)
+                ))
+                .when()
+                .post("/calc/batch")
+                .then()
+                .statusCode(200)
+                .body("[0].status", is(400))
+                .body("[0].error", containsString("divide by zero"))
+                .body("[1].status", is(200))
+                .body("[1].calculation.id", notNullValue())
+                .body("[1].calculation.result", is(12.0f));
+
+        // empty batch is rejected as a whole
+        given()
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType("application/json")
+                .body(List.of())
+                .when()
+                .post("/calc/batch")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test @Order(17)
+    void calculations_are_keyset_paginated() {
+        var first = given()
+                .header("Authorization", "Bearer " + adminToken)
+                .queryParam("limit", 2)
+                .when()
+                .get("/calc/calculations")
+                .then()
+                .statusCode(200)
+                .body("size()", is(2))
+                .header("X-Next-Cursor", not(emptyOrNullString()))
+                .extract();
+
+        List<Integer> firstIds = first.jsonPath().getList("id", Integer.class);
+
+        List<Integer> secondIds = given()
+                .header("Authorization", "Bearer " + adminToken)
+                .queryParam("limit", 2)
+                .queryParam("after", first.header("X-Next-Cursor"))
+                .when()
+                .get("/calc/calculations")
+                .then()
+                .statusCode(200)
+                .extract().jsonPath().getList("id", Integer.class);
+
+        Assertions.assertFalse(secondIds.isEmpty());
+        Assertions.assertTrue(secondIds.stream().noneMatch(firstIds::contains), "pages must not overlap");
+
+        // bad parameters are client errors
+        given().queryParam("after", "garbage").when().get("/public/calculations").then().statusCode(400);
+        given().queryParam("limit", "0").when().get("/public/calculations").then().statusCode(400);
+    }
+
+    @Test @Order(18)
+    void calculations_can_be_streamed_as_json_or_ndjson() {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> all =
+                given().header("Authorization", "Bearer " + adminToken)
+                        .queryParam("stream", "json")
+                        .when().get("/calc/calculations")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/json"))
+                        .extract().as(List.class);
+        Assertions.assertFalse(all.isEmpty());
+
+        String ndjson =
+                given().header("Authorization", "Bearer " + guestToken)
+                        .header("Accept", "application/x-ndjson")
+                        .when().get("/calc/calculations")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/x-ndjson"))
+                        .extract().asString();
+
+        List<String> lines = ndjson.lines().filter(l -> !l.isBlank()).toList();
+        Assertions.assertFalse(lines.isEmpty());
+        Assertions.assertTrue(lines.stream().allMatch(l -> l.startsWith("{") && l.contains("\"username\":\"" + guestUser + "\"")),
+                "every line is one of the guest's calculations");
+
+        given().header("Authorization", "Bearer " + guestToken).queryParam("stream", "xml")
+                .when().get("/calc/calculations").then().statusCode(400);
+
+        // the public listing is paged only; streaming the whole table anonymously is refused
+        given().queryParam("stream", "json").when().get("/public/calculations").then().statusCode(400);
+        given().header("Accept", "application/x-ndjson").when().get("/public/calculations").then().statusCode(400);
+
+        // admins stream every user's rows
+        String everything =
+                given().header("Authorization", "Bearer " + adminToken)
+                        .queryParam("stream", "ndjson")
+                        .when().get("/admin/calculations")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/x-ndjson"))
+                        .extract().asString();
+        Assertions.assertTrue(everything.contains("\"username\":\"" + guestUser + "\""));
+        Assertions.assertTrue(everything.contains("\"username\":\"" + adminUser + "\""));
+        given().header("Authorization", "Bearer " + guestToken).queryParam("stream", "ndjson")
+                .when().get("/admin/calculations").then().statusCode(403);
+    }
+
+    @Test @Order(19)
+    void metrics_are_exposed_in_prometheus_format_with_route_templates() {
+        get("/public/stats").then().statusCode(200);
+        given().header("Authorization", "Bearer " + adminToken)
+                .when().delete("/calc/calculations/987654")
+                .then().statusCode(404);
+
+        // not for anonymous callers
+        when().get("/metrics").then().statusCode(401);
+
+        String body =
+                given().header("Authorization", "Bearer " + adminToken)
+                        .when().get("/metrics")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("text/plain"))
+                        .extract().asString();
+
+        Assertions.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"/public/stats\",status=\"200\"}"));
+        // path params stay in the template, never the raw value
+        Assertions.assertTrue(body.contains("route=\"/calc/calculations/{id}\",status=\"404\""));
+        Assertions.assertFalse(body.contains("987654"));
+        Assertions.assertTrue(body.contains("http_request_duration_seconds{method=\"GET\",route=\"/public/stats\",quantile=\"0.99\"}"));
+        Assertions.assertTrue(body.contains("http_request_db_seconds_count"));
+        Assertions.assertTrue(body.contains("jwt_verify_duration_seconds_count"));
+        Assertions.assertTrue(body.contains("jvm_memory_used_bytes{area=\"heap\"}"));
+    }
+
+    @Test @Order(20)
+    void static_responses_are_precompressed_and_support_conditional_get() throws Exception {
+        // raw bytes, so the client does not strip Content-Encoding while unzipping
+        var gzipped =
+                given().config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                        .header("Accept-Encoding", "gzip")
+                        .when().get("/routes")
+                        .then()
+                        .statusCode(200)
+                        .header("Content-Encoding", "gzip")
+                        .header("Vary", "Accept-Encoding")
+                        .extract();
+        String etag = gzipped.header("ETag");
+        Assertions.assertNotNull(etag);
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped.asByteArray()))) {
+            Assertions.assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("/calc/add"));
+        }
+
+        given().header("Accept-Encoding", "gzip").header("If-None-Match", etag)
+                .when().get("/routes")
+                .then()
+                .statusCode(304);
+
+        // the uncompressed copy has its own ETag, which does not validate the gzip representation
+        // without content decoders RestAssured does not add its own Accept-Encoding: gzip,deflate
+        String plainEtag =
+                given().config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                        .header("Accept-Encoding", "identity")
+                        .when().get("/routes")
+                        .then()
+                        .statusCode(200)
+                        .body(containsString("/calc/add"))
+                        .extract().header("ETag");
+        Assertions.assertNotEquals(etag, plainEtag);
+        given().header("Accept-Encoding", "gzip").header("If-None-Match", plainEtag)
+                .when().get("/routes")
+                .then()
+                .statusCode(200)
+                .header("ETag", etag);
+        given().header("Accept-Encoding", "gzip").header("If-None-Match", plainEtag + ", " + etag)
+                .when().get("/routes")
+                .then()
+                .statusCode(304);
+
+        String examplesEtag = get("/public/examples").then().statusCode(200).body("add", notNullValue()).extract().header("ETag");
+        given().header("If-None-Match", examplesEtag).when().get("/public/examples").then().statusCode(304);
+        given().header("If-None-Match", "\"stale\"").when().get("/public/examples").then().statusCode(200);
+    }
+
+    @Test @Order(21)
+    void unchanged_listings_answer_conditional_gets_with_304() {
+        String etag =
+                given().header("Authorization", "Bearer " + guestToken)
+                        .when().get("/calc/calculations")
+                        .then()
+                        .statusCode(200)
+                        .extract().header("ETag");
+        Assertions.assertTrue(etag.startsWith("W/"));
+
+        given().header("Authorization", "Bearer " + guestToken).header("If-None-Match", etag)
+                .when().get("/calc/calculations")
+                .then()
+                .statusCode(304);
+
+        given().header("Authorization", "Bearer " + guestToken)
+                .contentType("application/json")
+                .body(Map.of("num1", 1, "num2", 2))
+                .when().post("/calc/add")
+                .then().statusCode(anyOf(is(200), is(201)));
+
+        // a new calculation is a new version
+        given().header("Authorization", "Bearer " + guestToken).header("If-None-Match", etag)
+                .when().get("/calc/calculations")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(etag)));
+    }
+
+    @Test @Order(22)
+    void calculations_negotiate_binary_and_compact_formats() throws Exception {
+        byte[] cbor =
+                given().header("Authorization", "Bearer " + guestToken)
+                        .header("Accept", "application/cbor")
+                        .contentType("application/cbor")
+                        .body(Json.CBOR.writeValueAsBytes(Map.of("num1", 2.5, "num2", 4)))
+                        .when().post("/calc/add")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/cbor"))
+                        .extract().asByteArray();
+        CalculationDTO product = Json.CBOR.readValue(cbor, CalculationDTO.class);
+        Assertions.assertEquals(6.5, product.getResult());
+        Assertions.assertEquals(guestUser, product.getUsername());
+
+        byte[] smile =
+                given().header("Authorization", "Bearer " + guestToken)
+                        .header("Accept", "application/x-jackson-smile")
+                        .when().get("/calc/calculations")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/x-jackson-smile"))
+                        .extract().asByteArray();
+        CalculationDTO[] mine = Json.SMILE.readValue(smile, CalculationDTO[].class);
+        Assertions.assertTrue(List.of(mine).stream().anyMatch(c -> c.getId() == product.getId()));
+
+        // compact rows are [id, operation, num1, num2, result, timestamp, username]
+        List<List<Object>> rows =
+                given().header("Accept", "application/vnd.calcapi.compact+json")
+                        .when().get("/public/calculations")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/vnd.calcapi.compact+json"))
+                        .extract().jsonPath().getList("$");
+        Assertions.assertFalse(rows.isEmpty());
+        Assertions.assertEquals(7, rows.get(0).size());
+
+        // a body that does not parse is a bad request, not a server error
+        given().header("Authorization", "Bearer " + guestToken)
+                .contentType("application/json")
+                .body("{\"num1\":")
+                .when().post("/calc/add")
+                .then()
+                .statusCode(400);
+        given().header("Authorization", "Bearer " + guestToken)
+                .contentType("application/cbor")
+                .body(new byte[]{(byte) 0xff, 0x00, 0x13})
+                .when().post("/calc/add")
+                .then()
+                .statusCode(400);
+
+        // batch items in the compact form are [op, num1, num2]; the results come back compact as well
+        List<Object> batch =
+                given().header("Authorization", "Bearer " + guestToken)
+                        .header("Accept", "application/vnd.calcapi.compact+json")
+                        .contentType("application/vnd.calcapi.compact+json")
+                        .body("[[\"add\", 1, 2], [\"pow\", 2, 3]]")
+                        .when().post("/calc/batch")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/vnd.calcapi.compact+json"))
+                        .body("[0].status", equalTo(200))
+                        .body("[1].status", equalTo(400))
+                        .extract().jsonPath().getList("[0].calculation");
+        Assertions.assertEquals(7, batch.size());
+
+        // the JSON and CBOR copies of one listing are different representations
+        String jsonEtag = get("/public/calculations").then().statusCode(200).extract().header("ETag");
+        given().header("Accept", "application/cbor").header("If-None-Match", jsonEtag)
+                .when().get("/public/calculations")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(jsonEtag)));
+    }
+
+    @Test @Order(23)
+    void admins_export_calculations_as_csv() throws Exception {
+        String csv =
+                given().header("Authorization", "Bearer " + adminToken)
+                        .queryParam("user", guestUser)
+                        .when().get("/admin/export")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("text/csv"))
+                        .header("Content-Disposition", containsString("calculations.csv"))
+                        .extract().asString();
+        List<String> lines = csv.lines().toList();
+        Assertions.assertEquals("id,timestamp,username,operation,num1,num2,result", lines.get(0));
+        Assertions.assertTrue(lines.size() > 1);
+        Assertions.assertTrue(lines.stream().skip(1).allMatch(l -> l.contains("," + guestUser + ",")));
+
+        byte[] gzipped =
+                given().config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                        .header("Authorization", "Bearer " + adminToken)
+                        .queryParam("user", guestUser)
+                        .queryParam("gzip", true)
+                        .when().get("/admin/export")
+                        .then()
+                        .statusCode(200)
+                        .contentType(containsString("application/gzip"))
+                        .extract().asByteArray();
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            Assertions.assertEquals(csv, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        given().header("Authorization", "Bearer " + adminToken).queryParam("operation", "modulo")
+                .when().get("/admin/export").then().statusCode(400);
+        given().header("Authorization", "Bearer " + adminToken).queryParam("user", "nobody_" + UUID.randomUUID())
+                .when().get("/admin/export").then().statusCode(404);
+        given().header("Authorization", "Bearer " + guestToken)
+                .when().get("/admin/export").then().statusCode(403);
+    }
 }
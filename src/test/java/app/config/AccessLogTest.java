@@ -0,0 +1,24 @@
+package app.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogTest {
+
+    @Test
+    void shouldFormatOneJsonLine() {
+        String line = AccessLog.format("2026-01-05T10:15:02Z", "GET", "/calc/calculations/{id}",
+                "/api/calc/calculations/7", 200, 4.2109f, "alice", 96);
+        assertEquals("{\"ts\":\"2026-01-05T10:15:02Z\",\"method\":\"GET\",\"route\":\"/calc/calculations/{id}\","
+                + "\"path\":\"/api/calc/calculations/7\",\"status\":200,\"ms\":4.211,\"user\":\"alice\",\"bytes\":96}", line);
+    }
+
+    @Test
+    void shouldEscapeClientControlledValues() {
+        String line = AccessLog.format("t", "GET", "unmatched", "/api/\"x\"\n\\y", 404, 0.5f, null, -1);
+        assertTrue(line.contains("\"path\":\"/api/\\\"x\\\"\\n\\\\y\""));
+        assertTrue(line.contains("\"user\":null"));
+        assertFalse(line.contains("\n"));
+    }
+}
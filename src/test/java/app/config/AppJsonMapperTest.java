@@ -0,0 +1,50 @@
+package app.config;
+
+import app.dtos.CalculationDTO;
+import app.utils.Json;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppJsonMapperTest {
+
+    private final AppJsonMapper mapper = new AppJsonMapper();
+
+    private static CalculationDTO dto(int id) {
+        return new CalculationDTO(id, 0.1, 0.2, 0.30000000000000004, "ADD", LocalDateTime.of(2025, 1, 2, 3, 4, 5), "alice");
+    }
+
+    @Test
+    void dtoListShouldSerializeLikeTheGenericWriter() throws Exception {
+        List<CalculationDTO> list = List.of(dto(1), dto(2));
+        assertSame(Json.CALCULATION_LIST_WRITER, Json.writerFor(list));
+        assertEquals(Json.MAPPER.writeValueAsString(list), mapper.toJsonString(list, List.class));
+    }
+
+    @Test
+    void doublesAndTimestampsShouldKeepTheirFormat() {
+        String json = mapper.toJsonString(dto(7), CalculationDTO.class);
+        assertTrue(json.contains("\"result\":0.30000000000000004"), json);
+        assertTrue(json.contains("\"timestamp\":\"2025-01-02T03:04:05\""), json);
+    }
+
+    @Test
+    void shouldRoundTripAndIgnoreUnknownFields() {
+        CalculationDTO back = mapper.fromJsonString(
+                "{\"id\":3,\"num1\":1.5,\"num2\":2,\"result\":3.5,\"operation\":\"ADD\",\"username\":\"bob\",\"extra\":true}",
+                CalculationDTO.class);
+        assertEquals(3, back.getId());
+        assertEquals(3.5, back.getResult());
+        assertEquals("bob", back.getUsername());
+    }
+
+    @Test
+    void stringsShouldPassThroughAsReadyMadeJson() {
+        assertEquals("{\"error\":\"x\"}", mapper.toJsonString("{\"error\":\"x\"}", String.class));
+        assertEquals("{\"a\":\"b\"}", mapper.toJsonString(Map.of("a", "b"), Map.class));
+    }
+}
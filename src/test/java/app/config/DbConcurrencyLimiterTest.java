@@ -0,0 +1,80 @@
+package app.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DbConcurrencyLimiterTest {
+
+    private EntityManagerFactory limited(int permits) {
+        EntityManagerFactory emf = mock(EntityManagerFactory.class);
+        when(emf.createEntityManager()).thenAnswer(inv -> mock(EntityManager.class));
+        return DbConcurrencyLimiter.wrap(emf, permits, 50);
+    }
+
+    @Test
+    void secondThreadShouldTimeOutWhilePermitIsHeld() throws Exception {
+        EntityManagerFactory emf = limited(1);
+        EntityManager em = emf.createEntityManager();
+
+        var other = CompletableFuture.supplyAsync(emf::createEntityManager);
+        var ex = assertThrows(Exception.class, () -> other.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PersistenceException.class, ex.getCause());
+
+        em.close();
+        var afterClose = CompletableFuture.supplyAsync(emf::createEntityManager).get(5, TimeUnit.SECONDS);
+        afterClose.close();
+
+        var m = DbConcurrencyLimiter.of(emf).metrics();
+        assertEquals(1L, m.get("timeouts"));
+        assertEquals(0, m.get("inUse"));
+    }
+
+    @Test
+    void nestedEntityManagerOnSameThreadShouldNotTakeSecondPermit() {
+        EntityManagerFactory emf = limited(1);
+        EntityManager outer = emf.createEntityManager();
+        try (EntityManager inner = emf.createEntityManager()) {
+            assertNotNull(inner);
+        }
+        assertEquals(1, DbConcurrencyLimiter.of(emf).metrics().get("inUse"), "still held by the outer one");
+        outer.close();
+        assertEquals(0, DbConcurrencyLimiter.of(emf).metrics().get("inUse"));
+    }
+
+    @Test
+    void closingTwiceShouldReleaseOnce() {
+        EntityManagerFactory emf = limited(2);
+        EntityManager em = emf.createEntityManager();
+        em.close();
+        em.close();
+        assertEquals(0, DbConcurrencyLimiter.of(emf).metrics().get("inUse"));
+    }
+
+    @Test
+    void closingOnAnotherThreadShouldReleaseThePermit() throws Exception {
+        EntityManagerFactory emf = limited(1);
+        EntityManager em = emf.createEntityManager();
+
+        CompletableFuture.runAsync(em::close).get(5, TimeUnit.SECONDS);
+        assertEquals(0, DbConcurrencyLimiter.of(emf).metrics().get("inUse"));
+
+        // the opening thread is not left believing it still holds a permit
+        EntityManager next = emf.createEntityManager();
+        assertEquals(1, DbConcurrencyLimiter.of(emf).metrics().get("inUse"));
+        next.close();
+        assertEquals(0, DbConcurrencyLimiter.of(emf).metrics().get("inUse"));
+    }
+
+    @Test
+    void ofShouldReturnNullForUnwrappedFactory() {
+        assertNull(DbConcurrencyLimiter.of(mock(EntityManagerFactory.class)));
+    }
+}
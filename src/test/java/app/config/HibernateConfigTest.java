@@ -9,6 +9,7 @@ import org.testcontainers.containers.PostgreSQLContainer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Integration test verifying that Hibernate can bootstrap correctly,
@@ -76,4 +77,20 @@ class HibernateConfigTest {
 
         em.close();
     }
+
+    @Test
+    @DisplayName("The test profile should run on a Hikari pool with metrics installed")
+    void shouldUseHikariPoolWithMetrics() {
+        PoolMetrics pool = PoolMetrics.of(emf);
+        assertNotNull(pool, "Hikari pool metrics should be installed");
+
+        try (EntityManager em = emf.createEntityManager()) {
+            em.createNativeQuery("SELECT 1").getSingleResult();
+        }
+
+        var snapshot = pool.snapshot();
+        assertEquals(PoolConfig.test().maximumPoolSize(), snapshot.get("maximumPoolSize"));
+        assertTrue((long) snapshot.get("checkouts") >= 1, "checkout should be recorded");
+        assertTrue(snapshot.containsKey("pending"));
+    }
 }
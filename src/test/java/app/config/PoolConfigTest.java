@@ -0,0 +1,35 @@
+package app.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoolConfigTest {
+
+    @Test
+    void applyShouldSetHikariAndDriverProperties() {
+        Properties props = PoolConfig.deployed().apply(new Properties());
+
+        assertEquals("org.hibernate.hikaricp.internal.HikariCPConnectionProvider", props.get("hibernate.connection.provider_class"));
+        assertEquals("20", props.get("hibernate.hikari.maximumPoolSize"));
+        assertEquals("3000", props.get("hibernate.hikari.connectionTimeout"));
+        assertEquals("5", props.get("hibernate.hikari.dataSource.prepareThreshold"));
+        assertEquals("true", props.get("hibernate.hikari.dataSource.reWriteBatchedInserts"));
+    }
+
+    @Test
+    void minimumIdleShouldNeverExceedPoolSize() {
+        PoolConfig config = new PoolConfig("p", 4, 10, 1000, 1000, 1000, 0, 5, false);
+        Properties props = config.apply(new Properties());
+        assertEquals("4", props.get("hibernate.hikari.minimumIdle"));
+    }
+
+    @Test
+    void profilesShouldDiffer() {
+        assertTrue(PoolConfig.deployed().maximumPoolSize() > PoolConfig.test().maximumPoolSize());
+        assertEquals(0, PoolConfig.deployed().leakDetectionThresholdMs());
+        assertTrue(PoolConfig.dev().leakDetectionThresholdMs() > 0);
+    }
+}
@@ -1,6 +1,9 @@
 package app.daos;
 
 import app.config.HibernateConfig;
+import app.dtos.CalculationDTO;
+import app.dtos.ExportFilter;
+import app.dtos.PageCursor;
 import app.entities.Calculation;
 import app.entities.User;
 import app.security.enums.Role;
@@ -8,8 +11,13 @@ import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -119,12 +127,129 @@ class CalculationDAOTest {
         assertTrue(userCalcs.size() >= 2);
     }
 
+    @Test
+    void findPageShouldWalkUserHistoryNewestFirstWithoutGaps() {
+        User pager = new User();
+        pager.setUsername("PagerUser");
+        pager.setPassword("test123");
+        pager.setRole(Role.GUEST);
+        pager = userDAO.create(pager);
+
+        LocalDateTime ts = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 5; i++) {
+            Calculation calc = createTestCalc(i, 0, i, "ADD");
+            calc.setUser(pager);
+            calc.setTimestamp(i < 3 ? ts : ts.plusSeconds(i)); // three share a timestamp, so id breaks the tie
+            calcDAO.create(calc);
+        }
+
+        List<CalculationDTO> seen = new ArrayList<>();
+        PageCursor after = null;
+        List<CalculationDTO> page;
+        do {
+            page = calcDAO.findPage(pager.getId(), after, 2);
+            seen.addAll(page);
+            if (!page.isEmpty()) after = PageCursor.of(page.get(page.size() - 1));
+        } while (page.size() == 2);
+
+        assertEquals(5, seen.size());
+        assertEquals(5, new HashSet<>(seen.stream().map(CalculationDTO::getId).toList()).size());
+        for (int i = 1; i < seen.size(); i++) {
+            CalculationDTO prev = seen.get(i - 1);
+            CalculationDTO cur = seen.get(i);
+            assertTrue(prev.getTimestamp().isAfter(cur.getTimestamp())
+                    || (prev.getTimestamp().equals(cur.getTimestamp()) && prev.getId() > cur.getId()));
+        }
+    }
+
+    @Test
+    void countByOperationShouldFollowCreatesAndDeletes() {
+        Map<String, Long> before = calcDAO.countByOperation();
+
+        Calculation add = calcDAO.create(createTestCalc(1, 1, 2, "ADD"));
+        calcDAO.createAll(List.of(createTestCalc(2, 2, 4, "ADD"), createTestCalc(2, 3, 6, "MULTIPLY")));
+        calcDAO.delete(add.getId());
+
+        Map<String, Long> after = calcDAO.countByOperation();
+        assertEquals(before.getOrDefault("ADD", 0L) + 1, after.get("ADD"));
+        assertEquals(before.getOrDefault("MULTIPLY", 0L) + 1, after.get("MULTIPLY"));
+    }
+
+    @Test
+    void findLatestShouldReturnNewestCalculation() {
+        Calculation newest = createTestCalc(7, 7, 14, "ADD");
+        newest.setTimestamp(LocalDateTime.now().plusDays(1));
+        newest = calcDAO.create(newest);
+
+        CalculationDTO latest = calcDAO.findLatest();
+        assertEquals(newest.getId(), latest.getId());
+        assertEquals("DaoTestUser", latest.getUsername());
+    }
+
     @Test
     void findByIdShouldReturnNullForNonExistent() {
         Calculation found = calcDAO.findById(999999);
         assertNull(found);
     }
 
+    @Test
+    void dataVersionsShouldGrowOnEveryChangeOfTheirScope() {
+        User other = new User();
+        other.setUsername("DaoVersionUser");
+        other.setPassword("test123");
+        other.setRole(Role.GUEST);
+        other = userDAO.create(other);
+
+        long all = calcDAO.dataVersion(null);
+        long mine = calcDAO.dataVersion(testUser.getId());
+        long theirs = calcDAO.dataVersion(other.getId());
+
+        Calculation saved = calcDAO.create(createTestCalc(1, 1, 2, "ADD"));
+        assertTrue(calcDAO.dataVersion(null) > all);
+        assertTrue(calcDAO.dataVersion(testUser.getId()) > mine);
+        assertEquals(theirs, calcDAO.dataVersion(other.getId()));
+
+        all = calcDAO.dataVersion(null);
+        mine = calcDAO.dataVersion(testUser.getId());
+        assertTrue(calcDAO.deleteIfExists(saved.getId()));
+        assertTrue(calcDAO.dataVersion(null) > all);
+        assertTrue(calcDAO.dataVersion(testUser.getId()) > mine);
+
+        // nothing deleted, nothing changed
+        all = calcDAO.dataVersion(null);
+        assertFalse(calcDAO.deleteIfExists(999999));
+        assertEquals(all, calcDAO.dataVersion(null));
+    }
+
+    @Test
+    void exportCsvShouldCopyOnlyMatchingRowsOldestFirst() throws Exception {
+        User exporter = new User();
+        exporter.setUsername("DaoExportUser");
+        exporter.setPassword("test123");
+        exporter.setRole(Role.GUEST);
+        exporter = userDAO.create(exporter);
+
+        LocalDateTime base = LocalDateTime.of(2020, 3, 1, 12, 0);
+        String[] ops = {"ADD", "DIVIDE", "ADD", "ADD"};
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < ops.length; i++) {
+            Calculation c = createTestCalc(i, 2, i + 2, ops[i]);
+            c.setUser(exporter);
+            c.setTimestamp(base.plusDays(i));
+            ids.add(calcDAO.create(c).getId());
+        }
+
+        ExportFilter filter = ExportFilter.of("2020-03-01", "2020-03-04", exporter.getId(), "add");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, calcDAO.exportCsv(filter, out));
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("id,timestamp,username,operation,num1,num2,result", lines.get(0));
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith(ids.get(0) + ",2020-03-01 12:00:00,DaoExportUser,ADD,"));
+        assertTrue(lines.get(2).startsWith(ids.get(2) + ",2020-03-03 12:00:00,DaoExportUser,ADD,"));
+    }
+
     private Calculation createTestCalc(double n1, double n2, double res, String op) {
         Calculation calc = new Calculation();
         calc.setNum1(n1);
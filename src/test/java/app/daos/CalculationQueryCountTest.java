@@ -0,0 +1,119 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.entities.Calculation;
+import app.entities.User;
+import app.security.enums.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the read paths behind the listing and stats endpoints against N+1 queries:
+ * each endpoint must run a fixed number of SQL statements no matter how many rows/users there are.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CalculationQueryCountTest {
+
+    private PostgreSQLContainer<?> postgres;
+    private EntityManagerFactory emf;
+    private CalculationDAO calcDAO;
+    private Statistics stats;
+    private User firstUser;
+
+    @BeforeAll
+    void setup() {
+        postgres = new PostgreSQLContainer<>("postgres:15.3-alpine3.18")
+                .withDatabaseName("test_query_count")
+                .withUsername("postgres")
+                .withPassword("postgres");
+        postgres.start();
+
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.createNewEntityManagerFactoryForTest();
+        calcDAO = new CalculationDAO(emf);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.setStatisticsEnabled(true);
+
+        UserDAO userDAO = new UserDAO(emf);
+        for (int u = 0; u < 3; u++) {
+            User user = new User();
+            user.setUsername("CountUser" + u);
+            user.setPassword("test123");
+            user.setRole(Role.GUEST);
+            user = userDAO.create(user);
+            if (firstUser == null) firstUser = user;
+            for (int i = 0; i < 4; i++) {
+                Calculation calc = new Calculation();
+                calc.setNum1(i);
+                calc.setNum2(u);
+                calc.setResult(i + u);
+                calc.setOperation("ADD");
+                calc.setTimestamp(LocalDateTime.now());
+                calc.setUser(user);
+                calcDAO.create(calc);
+            }
+        }
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (emf != null && emf.isOpen()) emf.close();
+        postgres.stop();
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        stats.clear();
+    }
+
+    @Test
+    @DisplayName("GET /public/calculations runs one statement")
+    void publicListingShouldRunOneStatement() {
+        var page = calcDAO.findPage(null, null, 100);
+        assertTrue(page.size() >= 12);
+        assertTrue(page.stream().allMatch(c -> c.getUsername() != null));
+        assertEquals(1, stats.getPrepareStatementCount());
+        assertEquals(0, stats.getEntityLoadCount(), "listing must not hydrate entities");
+    }
+
+    @Test
+    @DisplayName("GET /calc/calculations runs one statement")
+    void userListingShouldRunOneStatement() {
+        var page = calcDAO.findPage(firstUser.getId(), null, 100);
+        assertEquals(4, page.size());
+        assertEquals(1, stats.getPrepareStatementCount());
+        assertEquals(0, stats.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("GET /public/calculations?stream=ndjson runs one statement")
+    void streamingShouldRunOneStatement() {
+        int[] rows = {0};
+        calcDAO.streamAll(null, dto -> rows[0]++);
+        assertTrue(rows[0] >= 12);
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("GET /public/stats runs two statements")
+    void statsShouldRunTwoStatements() {
+        calcDAO.countByOperation();
+        assertNotNull(calcDAO.findLatest());
+        assertEquals(2, stats.getPrepareStatementCount());
+        assertEquals(0, stats.getEntityLoadCount());
+    }
+
+    @Test
+    void findAllByUserShouldFetchUserInSameStatement() {
+        var mine = calcDAO.findAllByUser(firstUser);
+        mine.forEach(c -> assertEquals("CountUser0", c.getUser().getUsername()));
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+}
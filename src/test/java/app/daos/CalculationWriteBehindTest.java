@@ -0,0 +1,78 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.entities.Calculation;
+import app.entities.User;
+import app.security.enums.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CalculationWriteBehindTest {
+
+    private PostgreSQLContainer<?> postgres;
+    private EntityManagerFactory emf;
+    private CalculationDAO calcDAO;
+    private User testUser;
+
+    @BeforeAll
+    void setup() {
+        postgres = new PostgreSQLContainer<>("postgres:15.3-alpine3.18")
+                .withDatabaseName("test_write_behind")
+                .withUsername("postgres")
+                .withPassword("postgres");
+        postgres.start();
+
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.createNewEntityManagerFactoryForTest();
+        calcDAO = new CalculationDAO(emf);
+
+        testUser = new User();
+        testUser.setUsername("WriteBehindUser");
+        testUser.setPassword("test123");
+        testUser.setRole(Role.GUEST);
+        testUser = new UserDAO(emf).create(testUser);
+    }
+
+    @AfterAll
+    void tearDown() {
+        CalculationWriteBehind.stopAll();
+        if (emf != null && emf.isOpen()) emf.close();
+        postgres.stop();
+    }
+
+    @Test
+    void closeShouldFlushEverythingQueued() {
+        int before = calcDAO.findAllByUser(testUser).size();
+        CalculationWriteBehind writer = CalculationWriteBehind.start(emf, 1000, 25, 50, 100);
+
+        for (int i = 0; i < 120; i++) {
+            assertTrue(writer.submit(createTestCalc(i)));
+        }
+        writer.close();
+
+        assertEquals(before + 120, calcDAO.findAllByUser(testUser).size());
+        Map<String, Object> metrics = writer.metrics();
+        assertEquals(120L, metrics.get("written"));
+        assertEquals(0, metrics.get("queueDepth"));
+        assertTrue((int) metrics.get("largestBatchSize") <= 25);
+        assertFalse(writer.submit(createTestCalc(0)), "closed writer should hand rows back to the caller");
+    }
+
+    private Calculation createTestCalc(double n) {
+        Calculation calc = new Calculation();
+        calc.setNum1(n);
+        calc.setNum2(1);
+        calc.setResult(n + 1);
+        calc.setOperation("ADD");
+        calc.setTimestamp(LocalDateTime.now());
+        calc.setUser(testUser);
+        return calc;
+    }
+}
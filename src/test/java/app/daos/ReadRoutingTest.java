@@ -0,0 +1,95 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.entities.User;
+import app.security.enums.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two separate Postgres containers stand in for primary and replica; each holds a user the other does not,
+// so every read shows which database it went to.
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReadRoutingTest {
+
+    private EntityManagerFactory primary;
+    private EntityManagerFactory replica;
+    private UserDAO userDAO;
+
+    @BeforeAll
+    void setup() {
+        HibernateConfig.setTest(true);
+        primary = HibernateConfig.createNewEntityManagerFactoryForTest("jdbc:tc:postgresql:15.3-alpine3.18:///routing_primary");
+        replica = HibernateConfig.createNewEntityManagerFactoryForTest("jdbc:tc:postgresql:15.3-alpine3.18:///routing_replica");
+
+        new UserDAO(primary).create(user("onPrimary"));
+        new UserDAO(replica).create(user("onReplica"));
+
+        ReadRouting.register(primary, replica);
+        userDAO = new UserDAO(primary);
+    }
+
+    @BeforeEach
+    void unpin() {
+        ReadRouting.clear();
+    }
+
+    @AfterAll
+    void tearDown() {
+        ReadRouting.unregister(primary);
+        ReadRouting.clear();
+        if (primary != null && primary.isOpen()) primary.close();
+        if (replica != null && replica.isOpen()) replica.close();
+    }
+
+    private static User user(String username) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("pw");
+        u.setRole(Role.GUEST);
+        return u;
+    }
+
+    private List<String> usernames() {
+        return userDAO.getAll().stream().map(User::getUsername).toList();
+    }
+
+    @Test
+    void readsShouldGoToReplica() {
+        assertEquals(List.of("onReplica"), usernames());
+    }
+
+    @Test
+    void readsAfterWriteShouldGoToPrimary() {
+        userDAO.create(user("justWritten"));
+
+        assertTrue(ReadRouting.isPinned());
+        assertTrue(usernames().containsAll(List.of("onPrimary", "justWritten")));
+
+        ReadRouting.clear();
+        assertEquals(List.of("onReplica"), usernames());
+    }
+
+    @Test
+    void explicitPinShouldReadPrimary() {
+        ReadRouting.pinToPrimary();
+        assertTrue(usernames().contains("onPrimary"));
+        assertFalse(usernames().contains("onReplica"));
+    }
+
+    @Test
+    void cachedUserLookupsShouldStayOnPrimary() {
+        // served from the primary's second-level cache, which the replica could not keep in sync
+        assertNotNull(userDAO.findByUsername("onPrimary"));
+        assertNull(userDAO.findByUsername("onReplica"));
+    }
+
+    @Test
+    void unregisteredFactoryShouldReadItself() {
+        UserDAO replicaDAO = new UserDAO(replica);
+        assertNotNull(replicaDAO.findByUsername("onReplica"));
+    }
+}
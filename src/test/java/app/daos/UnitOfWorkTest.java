@@ -0,0 +1,190 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.entities.Calculation;
+import app.entities.User;
+import app.security.enums.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A request's DAO calls share one EntityManager and one transaction, and roll back together.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UnitOfWorkTest {
+
+    private EntityManagerFactory emf;
+    private CalculationDAO calcDAO;
+    private UserDAO userDAO;
+    private Statistics stats;
+    private User user;
+
+    @BeforeAll
+    void setup() {
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.createNewEntityManagerFactoryForTest("jdbc:tc:postgresql:15.3-alpine3.18:///test_unit_of_work");
+        calcDAO = new CalculationDAO(emf);
+        userDAO = new UserDAO(emf);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+
+        User u = new User();
+        u.setUsername("UowUser");
+        u.setPassword("pw");
+        u.setRole(Role.GUEST);
+        user = userDAO.create(u);
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (emf != null && emf.isOpen()) emf.close();
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        stats.clear();
+    }
+
+    private Calculation calc(double n1) {
+        Calculation c = new Calculation();
+        c.setNum1(n1);
+        c.setNum2(1);
+        c.setResult(n1 + 1);
+        c.setOperation("ADD");
+        c.setTimestamp(LocalDateTime.now());
+        c.setUser(user);
+        return c;
+    }
+
+    @Test
+    void requestShouldUseOneSessionAndOneTransaction() {
+        UnitOfWork uow = UnitOfWork.begin();
+        userDAO.findById(user.getId());
+        Calculation saved = calcDAO.create(calc(1));
+        calcDAO.findPage(user.getId(), null, 10);
+        calcDAO.countByOperation();
+        uow.end();
+
+        assertEquals(1, stats.getSessionOpenCount());
+        assertEquals(1, stats.getTransactionCount());
+        assertNotNull(calcDAO.findById(saved.getId()), "committed at end");
+    }
+
+    @Test
+    void rollbackOnlyShouldUndoAllWrites() {
+        long before = calcDAO.countByOperation().getOrDefault("ADD", 0L);
+
+        UnitOfWork uow = UnitOfWork.begin();
+        Calculation saved = calcDAO.create(calc(2));
+        assertNotNull(saved.getId(), "id is assigned at flush");
+        uow.setRollbackOnly();
+        uow.end();
+
+        assertNull(calcDAO.findById(saved.getId()));
+        assertEquals(before, calcDAO.countByOperation().getOrDefault("ADD", 0L), "counter rolled back with the row");
+    }
+
+    @Test
+    void endShouldUnbindFromThread() {
+        UnitOfWork uow = UnitOfWork.begin();
+        assertSame(uow, UnitOfWork.current());
+        uow.end();
+        assertNull(UnitOfWork.current());
+    }
+
+    @Test
+    void cachedReadShouldNotOpenATransactionOrConnection() {
+        userDAO.findById(user.getId());
+        stats.clear();
+
+        UnitOfWork uow = UnitOfWork.begin();
+        assertNotNull(userDAO.findById(user.getId()));
+        uow.end();
+
+        assertEquals(1, stats.getSecondLevelCacheHitCount());
+        assertEquals(0, stats.getTransactionCount());
+        assertEquals(0, stats.getConnectCount());
+    }
+
+    @Test
+    void endCurrentShouldCommitAndLeaveLaterCallsOnTheirOwn() {
+        UnitOfWork uow = UnitOfWork.begin();
+        Calculation saved = calcDAO.create(calc(3));
+        UnitOfWork.endCurrent();
+        assertNull(UnitOfWork.current());
+
+        uow.setRollbackOnly();
+        uow.end();
+        assertNotNull(calcDAO.findById(saved.getId()), "committed by endCurrent, the later end is a no-op");
+    }
+
+    @Test
+    void runInNewShouldCommitOnAnotherThreadWithoutTouchingTheRequest() throws Exception {
+        UnitOfWork uow = UnitOfWork.begin();
+        Calculation saved = CompletableFuture.supplyAsync(() -> UnitOfWork.runInNew(() -> calcDAO.create(calc(5)))).get();
+        assertSame(uow, UnitOfWork.current());
+        uow.setRollbackOnly();
+        uow.end();
+
+        assertNotNull(calcDAO.findById(saved.getId()), "the other thread's write had its own unit");
+    }
+
+    @Test
+    void runInNewShouldRollBackWhenWorkThrows() {
+        long before = calcDAO.countByOperation().getOrDefault("ADD", 0L);
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.runInNew(() -> {
+            calcDAO.create(calc(6));
+            throw new IllegalStateException("boom");
+        }));
+        assertNull(UnitOfWork.current());
+        assertEquals(before, calcDAO.countByOperation().getOrDefault("ADD", 0L));
+    }
+
+    @Test
+    void afterCommitShouldRunOnlyOnceCommitted() {
+        var ran = new ArrayList<String>();
+
+        UnitOfWork uow = UnitOfWork.begin();
+        UnitOfWork.afterCommit(() -> ran.add("committed"));
+        assertTrue(ran.isEmpty(), "not before the commit");
+        uow.end();
+        assertEquals(List.of("committed"), ran);
+
+        UnitOfWork rolledBack = UnitOfWork.begin();
+        UnitOfWork.afterCommit(() -> ran.add("rolled back"));
+        rolledBack.setRollbackOnly();
+        rolledBack.end();
+        assertEquals(List.of("committed"), ran);
+
+        UnitOfWork.afterCommit(() -> ran.add("no unit"));
+        assertEquals(List.of("committed", "no unit"), ran);
+    }
+
+    @Test
+    void largeBatchShouldKeepTheRequestsOtherChanges() {
+        UnitOfWork uow = UnitOfWork.begin();
+        User managed = UnitOfWork.read(emf, em -> em.find(User.class, user.getId()));
+        List<Calculation> batch = new ArrayList<>();
+        for (int i = 0; i < HibernateConfig.JDBC_BATCH_SIZE * 2 + 1; i++) batch.add(calc(i));
+        calcDAO.createAll(batch);
+        managed.setPassword("changed-after-batch");
+        uow.end();
+
+        assertEquals("changed-after-batch", userDAO.findById(user.getId()).getPassword(), "still managed, so flushed at commit");
+    }
+
+    @Test
+    void deleteIfExistsShouldReportMissingRow() {
+        assertFalse(calcDAO.deleteIfExists(-1));
+        Calculation saved = calcDAO.create(calc(4));
+        assertTrue(calcDAO.deleteIfExists(saved.getId()));
+    }
+}
@@ -0,0 +1,97 @@
+package app.daos;
+
+import app.config.HibernateConfig;
+import app.entities.User;
+import app.security.enums.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The user lookups behind every authenticated request should be answered from the second-level
+ * and query cache, and writes through UserDAO must never leave a stale entry behind.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserCacheTest {
+
+    private EntityManagerFactory emf;
+    private UserDAO userDAO;
+    private Statistics stats;
+
+    @BeforeAll
+    void setup() {
+        HibernateConfig.setTest(true);
+        emf = HibernateConfig.createNewEntityManagerFactoryForTest("jdbc:tc:postgresql:15.3-alpine3.18:///test_user_cache");
+        userDAO = new UserDAO(emf);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (emf != null && emf.isOpen()) emf.close();
+    }
+
+    @BeforeEach
+    void resetStatistics() {
+        stats.clear();
+    }
+
+    private User create(String username, Role role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("pw");
+        u.setRole(role);
+        return userDAO.create(u);
+    }
+
+    @Test
+    void repeatLookupsShouldRunNoSql() {
+        User created = create("cachedUser", Role.GUEST);
+        userDAO.findByUsername("cachedUser");
+        userDAO.findById(created.getId());
+        stats.clear();
+
+        assertEquals("cachedUser", userDAO.findByUsername("cachedUser").getUsername());
+        assertEquals("cachedUser", userDAO.findById(created.getId()).getUsername());
+
+        assertEquals(0, stats.getPrepareStatementCount());
+        assertTrue(stats.getQueryCacheHitCount() >= 1);
+        assertTrue(stats.getSecondLevelCacheHitCount() >= 1);
+    }
+
+    @Test
+    void registrationShouldInvalidateCachedMiss() {
+        assertNull(userDAO.findByUsername("lateUser"));
+        assertNull(userDAO.findByUsername("lateUser"));
+
+        create("lateUser", Role.GUEST);
+
+        assertNotNull(userDAO.findByUsername("lateUser"));
+    }
+
+    @Test
+    void updateShouldReplaceCachedUser() {
+        User user = create("promotedUser", Role.GUEST);
+        assertEquals(Role.GUEST, userDAO.findById(user.getId()).getRole());
+
+        user.setRole(Role.ADMIN);
+        userDAO.update(user);
+
+        assertEquals(Role.ADMIN, userDAO.findById(user.getId()).getRole());
+        assertEquals(Role.ADMIN, userDAO.findByUsername("promotedUser").getRole());
+    }
+
+    @Test
+    void deleteShouldEvictUser() {
+        User user = create("deletedUser", Role.GUEST);
+        assertNotNull(userDAO.findByUsername("deletedUser"));
+
+        userDAO.delete(user.getId());
+
+        assertNull(userDAO.findById(user.getId()));
+        assertNull(userDAO.findByUsername("deletedUser"));
+    }
+}
@@ -0,0 +1,32 @@
+package app.dtos;
+
+import app.exceptions.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encodeAndDecodeShouldRoundTrip() throws ValidationException {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123456000), 42);
+
+        PageCursor decoded = PageCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void decodeShouldReturnNullForMissingCursor() throws ValidationException {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" "));
+    }
+
+    @Test
+    void decodeShouldRejectGarbage() {
+        assertThrows(ValidationException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertThrows(ValidationException.class, () -> PageCursor.decode("%%%"));
+    }
+}
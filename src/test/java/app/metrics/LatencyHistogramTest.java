@@ -0,0 +1,44 @@
+package app.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesShouldFollowRecordedValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        // 1..100 ms
+        IntStream.rangeClosed(1, 100).forEach(ms -> h.recordNanos(TimeUnit.MILLISECONDS.toNanos(ms)));
+
+        var s = h.snapshot();
+        assertEquals(100, s.count());
+        assertEquals(0.050, s.p50(), 0.002);
+        assertEquals(0.095, s.p95(), 0.002);
+        assertEquals(0.099, s.p99(), 0.002);
+        assertEquals(5.05, s.sum(), 1e-9);
+    }
+
+    @Test
+    void snapshotsShouldAccumulate() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.recordNanos(1_000_000);
+        assertEquals(1, h.snapshot().count());
+        h.recordNanos(2_000_000);
+        assertEquals(2, h.snapshot().count());
+    }
+
+    @Test
+    void outOfRangeValuesShouldBeClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.recordNanos(0);
+        h.recordNanos(TimeUnit.MINUTES.toNanos(5));
+        var s = h.snapshot();
+        assertEquals(2, s.count());
+        assertTrue(s.max() <= 60.1);
+    }
+}
@@ -0,0 +1,46 @@
+package app.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimerTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestTimer timer = RequestTimer.current();
+        if (timer != null) timer.finish();
+    }
+
+    @Test
+    void phasesShouldAddUpToTotal() {
+        RequestTimer timer = RequestTimer.start();
+        RequestTimer.addAuth(1_000_000);
+        RequestTimer.addDb(3_000_000);
+        RequestTimer.addDb(2_000_000);
+        RequestTimer.addSerialize(500_000);
+
+        assertEquals(1_000_000, timer.authNanos());
+        assertEquals(5_000_000, timer.dbNanos());
+        assertEquals(3_500_000, timer.computeNanos(10_000_000));
+        assertEquals("auth;dur=1.000, db;dur=5.000, compute;dur=3.500, serialize;dur=0.500, total;dur=10.000",
+                timer.serverTiming(10_000_000));
+    }
+
+    @Test
+    void computeShouldNeverBeNegative() {
+        RequestTimer timer = RequestTimer.start();
+        RequestTimer.addDb(5_000_000);
+        assertEquals(0, timer.computeNanos(1_000_000));
+    }
+
+    @Test
+    void addsShouldBeIgnoredOutsideARequest() {
+        RequestTimer timer = RequestTimer.start();
+        timer.finish();
+        assertNull(RequestTimer.current());
+        RequestTimer.addDb(1_000_000);
+        assertEquals(0, timer.dbNanos());
+    }
+}
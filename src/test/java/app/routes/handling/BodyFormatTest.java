@@ -0,0 +1,56 @@
+package app.routes.handling;
+
+import app.dtos.BatchItemRequest;
+import app.dtos.CalculationDTO;
+import app.dtos.CalculationRequest;
+import app.utils.Json;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodyFormatTest {
+
+    @Test
+    void fromAcceptShouldPickTheBestSupportedType() {
+        assertEquals(BodyFormat.JSON, BodyFormat.fromAccept(null));
+        assertEquals(BodyFormat.JSON, BodyFormat.fromAccept("*/*"));
+        assertEquals(BodyFormat.JSON, BodyFormat.fromAccept("text/html"));
+        assertEquals(BodyFormat.CBOR, BodyFormat.fromAccept("application/cbor"));
+        assertEquals(BodyFormat.SMILE, BodyFormat.fromAccept("application/x-jackson-smile, application/json;q=0.5"));
+        assertEquals(BodyFormat.JSON, BodyFormat.fromAccept("application/cbor;q=0.5, application/json"));
+        assertEquals(BodyFormat.JSON, BodyFormat.fromAccept("application/cbor;q=0"));
+        assertEquals(BodyFormat.COMPACT_JSON, BodyFormat.fromAccept("application/vnd.calcapi.compact+json"));
+    }
+
+    @Test
+    void compactJsonShouldWriteCalculationsAsArrays() throws Exception {
+        CalculationDTO dto = new CalculationDTO(7, 1.5, 2.0, 3.5, "ADD", LocalDateTime.of(2025, 1, 1, 12, 0), "alice");
+
+        String json = new String(BodyFormat.COMPACT_JSON.listBytes(List.of(dto)));
+        assertEquals("[[7,\"ADD\",1.5,2.0,3.5,\"2025-01-01T12:00:00\",\"alice\"]]", json);
+
+        CalculationRequest req = Json.COMPACT.readValue("[12.5,7.25]", CalculationRequest.class);
+        assertEquals(12.5, req.getNum1());
+        assertEquals(7.25, req.getNum2());
+
+        BatchItemRequest[] items = Json.COMPACT.readValue("[[\"add\",1,2],[\"divide\",9,3]]", BatchItemRequest[].class);
+        assertEquals("divide", items[1].getOp());
+        assertEquals(9, items[1].getNum1());
+    }
+
+    @Test
+    void binaryFormatsShouldRoundTripAndBeSmallerThanJson() throws Exception {
+        CalculationDTO dto = new CalculationDTO(7, 1.0 / 3, 2.0 / 3, 1.0, "ADD", LocalDateTime.of(2025, 1, 1, 12, 0), "alice");
+        byte[] json = BodyFormat.JSON.listBytes(List.of(dto));
+
+        for (BodyFormat format : List.of(BodyFormat.CBOR, BodyFormat.SMILE)) {
+            byte[] bytes = format.listBytes(List.of(dto));
+            CalculationDTO[] back = format.mapper().readValue(bytes, CalculationDTO[].class);
+            assertEquals(dto, back[0], format.name());
+            assertTrue(bytes.length < json.length, format.name() + " should be smaller than JSON");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package app.routes.handling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticResponseTest {
+
+    @Test
+    void acceptsShouldFollowAcceptEncoding() {
+        assertTrue(StaticResponse.accepts("gzip, deflate, br", "br"));
+        assertTrue(StaticResponse.accepts("gzip;q=0.8", "gzip"));
+        assertTrue(StaticResponse.accepts("*", "gzip"));
+        assertFalse(StaticResponse.accepts("gzip;q=0", "gzip"));
+        assertFalse(StaticResponse.accepts("br; q=0.0, identity", "br"));
+        assertFalse(StaticResponse.accepts("deflate", "gzip"));
+        assertFalse(StaticResponse.accepts(null, "gzip"));
+    }
+
+    @Test
+    void onlyOneRequestShouldReRenderWhileOthersServeThePreviousCopy() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch inRender = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StaticResponse response = StaticResponse.json(Duration.ofNanos(1), () -> {
+            if (renders.incrementAndGet() == 2) {
+                inRender.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return renders.get();
+        });
+        var first = response.rendered(null);
+
+        var refreshing = CompletableFuture.supplyAsync(() -> response.rendered(null));
+        assertTrue(inRender.await(5, TimeUnit.SECONDS));
+        assertSame(first, response.rendered(null), "served the previous rendering instead of rendering again");
+        release.countDown();
+
+        assertNotSame(first, refreshing.get(5, TimeUnit.SECONDS));
+        assertEquals(2, renders.get());
+    }
+}
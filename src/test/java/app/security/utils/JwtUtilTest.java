@@ -71,6 +71,18 @@ class JwtUtilTest {
         assertNull(JwtUtil.getUsername(null));
     }
 
+    @Test
+    void getUserIdShouldExtractIdFromToken() throws Exception {
+        String token = JwtUtil.generateToken(testUser);
+        assertEquals(testUser.getId(), JwtUtil.getUserId(token));
+    }
+
+    @Test
+    void getUserIdShouldReturnNullForInvalidToken() {
+        assertNull(JwtUtil.getUserId("invalid"));
+        assertNull(JwtUtil.getUserId(null));
+    }
+
     @Test
     void getRoleShouldExtractRoleFromToken() throws Exception {
         String token = JwtUtil.generateToken(testUser);
@@ -103,5 +115,39 @@ class JwtUtilTest {
         assertEquals(Role.ADMIN, role);
         assertTrue(JwtUtil.validateToken(token));
     }
-}
 
+    @Test
+    void verifyShouldReturnAllClaimsAtOnce() throws Exception {
+        String token = JwtUtil.generateToken(testUser);
+        JwtPrincipal principal = JwtUtil.verify(token);
+
+        assertNotNull(principal);
+        assertEquals("jwtTestUser", principal.username());
+        assertEquals(Role.ADMIN, principal.role());
+        assertEquals(testUser.getId(), principal.userId());
+        assertTrue(principal.expiresAtMillis() > System.currentTimeMillis());
+    }
+
+    @Test
+    void verifyShouldServeRepeatTokensFromCache() throws Exception {
+        String token = JwtUtil.generateToken(testUser);
+        JwtPrincipal first = JwtUtil.verify(token);
+        long hitsBefore = (long) JwtUtil.cacheMetrics().get("hits");
+
+        JwtPrincipal second = JwtUtil.verify(token);
+
+        assertSame(first, second);
+        assertEquals(hitsBefore + 1, (long) JwtUtil.cacheMetrics().get("hits"));
+    }
+
+    @Test
+    void verifyShouldRejectInvalidAndTamperedTokens() throws Exception {
+        assertNull(JwtUtil.verify(null));
+        assertNull(JwtUtil.verify(""));
+        assertNull(JwtUtil.verify("invalid-token"));
+
+        String token = JwtUtil.generateToken(testUser);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertNull(JwtUtil.verify(tampered));
+    }
+}
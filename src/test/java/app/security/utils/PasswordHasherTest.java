@@ -0,0 +1,66 @@
+package app.security.utils;
+
+import app.exceptions.ApiException;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PasswordHasherTest {
+
+    private PasswordHasher hasher;
+
+    @BeforeAll
+    void setup() {
+        hasher = new PasswordHasher(1, 1);
+    }
+
+    @AfterAll
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void hashAndCheckShouldRoundTrip() throws Exception {
+        String hashed = hasher.hash("password123").get(10, TimeUnit.SECONDS);
+
+        assertNotEquals("password123", hashed);
+        assertTrue(hasher.check("password123", hashed).get(10, TimeUnit.SECONDS));
+        assertFalse(hasher.check("wrong", hashed).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueueShouldBeRejectedWith503() throws Exception {
+        // One thread and a queue of one: the third hash while the first is still running has nowhere to go
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+        ApiException rejected = null;
+        for (int i = 0; i < 3 && rejected == null; i++) {
+            try {
+                accepted.add(hasher.hash("password" + i));
+            } catch (ApiException e) {
+                rejected = e;
+            }
+        }
+
+        assertNotNull(rejected);
+        assertEquals(503, rejected.getStatusCode());
+        for (CompletableFuture<String> f : accepted) f.get(10, TimeUnit.SECONDS);
+        assertTrue((long) hasher.metrics().get("rejected") >= 1);
+    }
+
+    @Test
+    void metricsShouldRecordHashAndQueueTimes() throws Exception {
+        hasher.hash("password123").get(10, TimeUnit.SECONDS);
+        var m = hasher.metrics();
+
+        assertTrue((long) m.get("completed") >= 1);
+        assertTrue((double) m.get("avgHashMs") > 0);
+        assertTrue(m.containsKey("avgQueueWaitMs"));
+        assertEquals(1, m.get("queueCapacity"));
+    }
+}
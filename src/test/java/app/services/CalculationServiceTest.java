@@ -1,6 +1,7 @@
 package app.services;
 
 import app.config.HibernateConfig;
+import app.daos.CalculationWriteBehind;
 import app.entities.Calculation;
 import app.entities.User;
 import app.exceptions.ValidationException;
@@ -55,6 +56,20 @@ class CalculationServiceTest {
         assertNotNull(c.getId());
     }
 
+    @Test
+    void writeBehindShouldLeaveTheReturnedCalculationAlone() {
+        CalculationWriteBehind writer = CalculationWriteBehind.start(emf, 100, 10, 10, 100);
+        Calculation c;
+        try {
+            c = calcService.add(testUser, 2, 3);
+        } finally {
+            CalculationWriteBehind.stopAll(); // flushes the queue
+        }
+        assertEquals(1L, writer.metrics().get("written"));
+        assertNull(c.getId(), "the writer assigned the id to its own copy");
+        assertSame(testUser, c.getUser());
+    }
+
     @Test
     void subtractShouldReturnCorrectResult() {
         Calculation c = calcService.subtract(testUser, 10, 4);
@@ -0,0 +1,115 @@
+package app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroCacheTest {
+
+    @Test
+    void concurrentMissesShouldShareOneLoad() throws Exception {
+        MicroCache<String, Integer> cache = new MicroCache<>("test-coalesce", Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get("k", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 42;
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Integer> f : results) assertEquals(42, f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(8L, (long) cache.metrics().get("misses") + (long) cache.metrics().get("coalesced")
+                + (long) cache.metrics().get("hits"));
+    }
+
+    @Test
+    void freshValueShouldBeServedWithoutLoading() {
+        MicroCache<String, Integer> cache = new MicroCache<>("test-fresh", Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.get("k", loads::incrementAndGet));
+        assertEquals(1, cache.get("k", loads::incrementAndGet));
+        assertEquals(1L, cache.metrics().get("hits"));
+
+        cache.invalidate();
+        assertEquals(2, cache.get("k", loads::incrementAndGet));
+    }
+
+    @Test
+    void invalidatedValueShouldStillBeTheFallbackOnError() {
+        MicroCache<String, Integer> cache = new MicroCache<>("test-invalidate", Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(5));
+        assertEquals(7, cache.get("k", () -> 7));
+        cache.invalidate();
+
+        assertEquals(7, cache.get("k", () -> {
+            throw new IllegalStateException("database down");
+        }), "not served as fresh or stale-while-revalidate, but still used when the reload fails");
+        assertEquals(1L, cache.metrics().get("staleOnError"));
+        assertEquals(0L, cache.metrics().get("staleServed"));
+    }
+
+    @Test
+    void staleValueShouldBeServedWhileRefreshing() throws Exception {
+        // the ttl is far longer than the wait for the refresh below, so the refreshed entry is still fresh when read
+        MicroCache<String, Integer> cache = new MicroCache<>("test-swr", Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.get("k", loads::incrementAndGet));
+        Thread.sleep(1_100);
+        assertEquals(1, cache.get("k", loads::incrementAndGet), "stale copy is returned right away");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loads.get() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        Thread.sleep(20);
+        assertEquals(2, cache.get("k", loads::incrementAndGet), "background refresh replaced it");
+        assertEquals(1L, cache.metrics().get("staleServed"));
+    }
+
+    @Test
+    void failedLoadShouldFallBackToLastValue() throws Exception {
+        MicroCache<String, Integer> cache = new MicroCache<>("test-error", Duration.ofMillis(20), Duration.ZERO, Duration.ofMinutes(1));
+        assertEquals(7, cache.get("k", () -> 7));
+        Thread.sleep(50);
+
+        assertEquals(7, cache.get("k", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals(1L, cache.metrics().get("staleOnError"));
+        assertEquals(1L, cache.metrics().get("loadErrors"));
+    }
+
+    @Test
+    void failedLoadWithoutFallbackShouldThrow() {
+        MicroCache<String, Integer> cache = new MicroCache<>("test-no-fallback", Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> cache.get("k", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals("database down", e.getMessage());
+    }
+}